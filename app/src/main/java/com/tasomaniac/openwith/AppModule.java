@@ -9,8 +9,12 @@ import android.os.Looper;
 import android.preference.PreferenceManager;
 import androidx.core.content.ContextCompat;
 import com.tasomaniac.openwith.data.prefs.BooleanPreference;
+import com.tasomaniac.openwith.data.prefs.LongPreference;
 import com.tasomaniac.openwith.data.prefs.TutorialShown;
+import com.tasomaniac.openwith.data.prefs.StaleWhileRevalidate;
 import com.tasomaniac.openwith.data.prefs.UsageAccess;
+import com.tasomaniac.openwith.data.prefs.UsageCheckpoint;
+import com.tasomaniac.openwith.resolver.IconCache;
 import com.tasomaniac.openwith.resolver.IconLoader;
 import com.tasomaniac.openwith.rx.SchedulingStrategy;
 import dagger.Binds;
@@ -58,9 +62,10 @@ abstract class AppModule {
     }
 
     @Provides
-    static IconLoader provideIconLoader(PackageManager pm, ActivityManager am) {
+    static IconLoader provideIconLoader(PackageManager pm, ActivityManager am, IconCache iconCache, Resources resources) {
         int iconDpi = am.getLauncherLargeIconDensity();
-        return new IconLoader(pm, iconDpi);
+        int iconSize = am.getLauncherLargeIconSize();
+        return new IconLoader(pm, iconCache, resources, iconDpi, iconSize);
     }
 
     @Provides
@@ -77,6 +82,20 @@ abstract class AppModule {
         return new BooleanPreference(prefs, "usage_access");
     }
 
+    @Provides
+    @Singleton
+    @UsageCheckpoint
+    static LongPreference provideUsageCheckpoint(SharedPreferences prefs) {
+        return new LongPreference(prefs, "usage_checkpoint");
+    }
+
+    @Provides
+    @Singleton
+    @StaleWhileRevalidate
+    static BooleanPreference provideStaleWhileRevalidate(SharedPreferences prefs) {
+        return new BooleanPreference(prefs, "pref_stale_while_revalidate");
+    }
+
     @Provides
     @Singleton
     static OkHttpClient provideOkHttpClient(Application app) {
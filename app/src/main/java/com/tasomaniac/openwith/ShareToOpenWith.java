@@ -12,6 +12,7 @@ import dagger.android.DaggerActivity;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.util.List;
 
 public class ShareToOpenWith extends DaggerActivity {
 
@@ -32,13 +33,13 @@ public class ShareToOpenWith extends DaggerActivity {
         trackDirectShare();
 
         final ShareCompat.IntentReader reader = ShareCompat.IntentReader.from(this);
-        String foundUrl = Urls.extractUrlFrom(getIntent(), reader);
+        List<String> foundUrls = Urls.extractUrlsFrom(getIntent(), reader);
 
-        if (foundUrl != null) {
+        if (!foundUrls.isEmpty()) {
             trackLinkOpen();
 
             String callerPackage = CallerPackageExtractor.from(this).extract();
-            Intent intent = RedirectFixActivity.createIntent(this, foundUrl)
+            Intent intent = createRedirectFixIntent(foundUrls)
                     .putExtra(ShareCompat.EXTRA_CALLING_PACKAGE, callerPackage);
             startActivity(intent);
         } else {
@@ -47,6 +48,13 @@ public class ShareToOpenWith extends DaggerActivity {
         finish();
     }
 
+    private Intent createRedirectFixIntent(List<String> foundUrls) {
+        if (foundUrls.size() == 1) {
+            return RedirectFixActivity.createIntent(this, foundUrls.get(0));
+        }
+        return RedirectFixActivity.createIntent(this, foundUrls);
+    }
+
     private void trackDirectShare() {
         if (isFromDirectShare(getIntent())) {
             analytics.sendEvent(
@@ -5,9 +5,11 @@ import androidx.recyclerview.widget.DividerItemDecoration
 import com.tasomaniac.openwith.HeaderAdapter
 import com.tasomaniac.openwith.R
 import com.tasomaniac.openwith.SimpleTextViewHolder
+import com.tasomaniac.openwith.browser.resolver.BrowserRegistry
 import com.tasomaniac.openwith.browser.resolver.BrowserResolver
 import com.tasomaniac.openwith.data.Analytics
 import com.tasomaniac.openwith.resolver.DisplayActivityInfo
+import com.tasomaniac.openwith.rx.SchedulingStrategy
 import com.tasomaniac.openwith.util.componentName
 import dagger.android.support.DaggerAppCompatActivity
 import io.reactivex.disposables.CompositeDisposable
@@ -20,6 +22,8 @@ class PreferredBrowserActivity : DaggerAppCompatActivity(), BrowsersAdapter.List
     @Inject lateinit var analytics: Analytics
     @Inject lateinit var viewHolderFactory: BrowserViewHolder.Factory
     @Inject lateinit var browserResolver: BrowserResolver
+    @Inject lateinit var browserRegistry: BrowserRegistry
+    @Inject lateinit var schedulingStrategy: SchedulingStrategy
     @Inject lateinit var browserPreferences: BrowserPreferences
 
     private val disposable = CompositeDisposable()
@@ -30,8 +34,13 @@ class PreferredBrowserActivity : DaggerAppCompatActivity(), BrowsersAdapter.List
 
         analytics.sendScreenView("Browser Apps")
         setupToolbar()
+        recyclerView.addItemDecoration(DividerItemDecoration(this, DividerItemDecoration.VERTICAL))
 
-        browserResolver.resolve()
+        browserRegistry.changes()
+            .map { Unit }
+            .startWith(Unit)
+            .switchMapSingle { browserResolver.resolve() }
+            .compose(schedulingStrategy.forObservable())
             .subscribe(::setupList)
             .addTo(disposable)
     }
@@ -42,8 +51,6 @@ class PreferredBrowserActivity : DaggerAppCompatActivity(), BrowsersAdapter.List
     }
 
     private fun setupList(browsers: List<DisplayActivityInfo>) {
-        recyclerView.addItemDecoration(DividerItemDecoration(this, DividerItemDecoration.VERTICAL))
-
         val browsersAdapter = BrowsersAdapter(browsers, browserPreferences.mode, viewHolderFactory, listener = this)
         recyclerView.adapter = HeaderAdapter(
             browsersAdapter,
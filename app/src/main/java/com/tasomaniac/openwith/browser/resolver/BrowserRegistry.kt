@@ -0,0 +1,85 @@
+package com.tasomaniac.openwith.browser.resolver
+
+import android.content.ComponentName
+import android.content.Intent
+import android.content.pm.PackageManager
+import android.content.pm.ResolveInfo
+import android.net.Uri
+import android.os.Build.VERSION.SDK_INT
+import android.os.Build.VERSION_CODES.M
+import androidx.annotation.WorkerThread
+import com.tasomaniac.openwith.BuildConfig
+import com.tasomaniac.openwith.resolver.PackageChangeMonitor
+import com.tasomaniac.openwith.rx.SchedulingStrategy
+import com.tasomaniac.openwith.util.componentName
+import io.reactivex.Observable
+import io.reactivex.subjects.PublishSubject
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * The installed browsers, queried once and then again only when packages change.
+ */
+@Singleton
+class BrowserRegistry @Inject constructor(
+    private val packageManager: PackageManager,
+    private val scheduling: SchedulingStrategy,
+    packageChangeMonitor: PackageChangeMonitor
+) {
+
+    /**
+     * Serialized, since refreshes of different package changes may emit from different executor threads.
+     */
+    private val changes = PublishSubject.create<Set<ComponentName>>().toSerialized()
+    @Volatile private var browsers: Browsers? = null
+
+    init {
+        packageChangeMonitor.changes().subscribe { scheduling.runOnExecutor { refresh() } }
+    }
+
+    /**
+     * @return one browser activity of each package, excluding this app.
+     */
+    @WorkerThread
+    fun browsers(): List<ResolveInfo> = current().resolved
+
+    @WorkerThread
+    fun isBrowser(component: ComponentName) = component in current().components
+
+    /**
+     * Emits the components of the browsers, on a background thread, whenever they change.
+     */
+    fun changes(): Observable<Set<ComponentName>> = changes
+
+    private fun current() = browsers ?: synchronized(this) {
+        browsers ?: query().also { browsers = it }
+    }
+
+    /**
+     * Nothing is queried until the browsers are needed for the first time.
+     */
+    private fun refresh() {
+        val updated = synchronized(this) {
+            val previous = browsers ?: return
+            query().takeIf { it.components != previous.components }?.also { browsers = it }
+        }
+        updated?.let { changes.onNext(it.components) }
+    }
+
+    private fun query(): Browsers {
+        val flag = if (SDK_INT >= M) PackageManager.MATCH_ALL else 0
+        val browserIntent = Intent()
+            .setAction(Intent.ACTION_VIEW)
+            .addCategory(Intent.CATEGORY_BROWSABLE)
+            .setData(Uri.parse("http:"))
+
+        val resolved = packageManager.queryIntentActivities(browserIntent, flag)
+            .filterNot { it.activityInfo.packageName == BuildConfig.APPLICATION_ID }
+            .distinctBy { it.activityInfo.packageName }
+        return Browsers(resolved)
+    }
+
+    private class Browsers(val resolved: List<ResolveInfo>) {
+        val components: Set<ComponentName> = resolved.mapTo(HashSet()) { it.activityInfo.componentName() }
+    }
+}
@@ -1,12 +1,7 @@
 package com.tasomaniac.openwith.browser.resolver
 
-import android.content.Intent
 import android.content.pm.PackageManager
 import android.content.pm.ResolveInfo
-import android.net.Uri
-import android.os.Build.VERSION.SDK_INT
-import android.os.Build.VERSION_CODES.M
-import com.tasomaniac.openwith.BuildConfig
 import com.tasomaniac.openwith.resolver.DisplayActivityInfo
 import com.tasomaniac.openwith.resolver.IconLoader
 import io.reactivex.Single
@@ -14,7 +9,8 @@ import javax.inject.Inject
 
 class BrowserResolver @Inject constructor(
     private val packageManager: PackageManager,
-    private val iconLoader: IconLoader
+    private val iconLoader: IconLoader,
+    private val browserRegistry: BrowserRegistry
 ) {
 
     fun resolve(): Single<List<DisplayActivityInfo>> = Single.fromCallable {
@@ -29,19 +25,5 @@ class BrowserResolver @Inject constructor(
         }
     }
 
-    fun queryBrowsers(): List<ResolveInfo> {
-        val flag = if (SDK_INT >= M) PackageManager.MATCH_ALL else 0
-        val browserIntent = Intent()
-            .setAction(Intent.ACTION_VIEW)
-            .addCategory(Intent.CATEGORY_BROWSABLE)
-            .setData(Uri.parse("http:"))
-
-        val resolvedBrowsers = packageManager.queryIntentActivities(browserIntent, flag)
-        resolvedBrowsers.removeAll {
-            it.activityInfo.packageName == BuildConfig.APPLICATION_ID
-        }
-        return resolvedBrowsers.distinctBy {
-            it.activityInfo.packageName
-        }
-    }
+    fun queryBrowsers(): List<ResolveInfo> = browserRegistry.browsers()
 }
@@ -0,0 +1,33 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+
+@Dao
+abstract class ChooserHistoryDao {
+
+    @Query("SELECT * FROM chooser_history")
+    abstract fun entries(): List<ChooserHistoryEntry>
+
+    /**
+     * Counts one more choice of [packageName], touching only its own row.
+     */
+    @Transaction
+    open fun increment(packageName: String) {
+        if (incrementExisting(packageName) == 0) {
+            insert(ChooserHistoryEntry(packageName, 1))
+        }
+    }
+
+    @Query("UPDATE chooser_history SET timesChosen = timesChosen + 1 WHERE packageName = :packageName")
+    abstract fun incrementExisting(packageName: String): Int
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract fun insert(entry: ChooserHistoryEntry)
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract fun insert(entries: List<ChooserHistoryEntry>)
+}
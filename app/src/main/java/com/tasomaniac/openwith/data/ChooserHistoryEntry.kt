@@ -0,0 +1,13 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * How many times an app from [packageName] is chosen in the chooser.
+ */
+@Entity(tableName = "chooser_history")
+data class ChooserHistoryEntry(
+    @PrimaryKey val packageName: String,
+    val timesChosen: Int
+)
@@ -0,0 +1,17 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Entity
+
+/**
+ * Decayed score of [component] for links to [host], as of [lastUsed] when it was last chosen.
+ */
+@Entity(
+    tableName = "chooser_score",
+    primaryKeys = ["host", "component"]
+)
+data class ChooserScore(
+    val host: String,
+    val component: String,
+    val score: Double,
+    val lastUsed: Long
+)
@@ -0,0 +1,19 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+
+@Dao
+interface ChooserScoreDao {
+
+    @Query("SELECT * FROM chooser_score WHERE host = :host")
+    fun scoresOf(host: String): List<ChooserScore>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun insert(score: ChooserScore)
+
+    @Query("DELETE FROM chooser_score WHERE lastUsed < :usedBefore")
+    fun deleteUsedBefore(usedBefore: Long)
+}
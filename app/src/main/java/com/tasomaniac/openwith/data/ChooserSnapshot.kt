@@ -0,0 +1,36 @@
+package com.tasomaniac.openwith.data
+
+import android.content.ComponentName
+import androidx.room.Entity
+import androidx.room.Ignore
+
+/**
+ * One row of the chooser as it was displayed the last time a link of the same kind was resolved.
+ */
+@Entity(
+    tableName = "chooser_snapshot",
+    primaryKeys = ["intentKey", "component"]
+)
+data class ChooserSnapshot(
+    val intentKey: String,
+    val component: String,
+    val position: Int,
+    val label: String,
+    /**
+     * Application label, or the package name, displayed next to the [label] when it is not unique.
+     */
+    val applicationLabel: String?,
+    /**
+     * Path of the rasterized icon in [com.tasomaniac.openwith.resolver.IconCache].
+     */
+    val iconPath: String,
+    /**
+     * Of the package when the snapshot was saved. The snapshot is outdated once the package is updated.
+     */
+    val lastUpdateTime: Long,
+    val savedAt: Long
+) {
+
+    val componentName: ComponentName
+        @Ignore get() = ComponentName.unflattenFromString(component)!!
+}
@@ -0,0 +1,47 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+import androidx.room.Transaction
+
+@Dao
+abstract class ChooserSnapshotDao {
+
+    @Query("SELECT * FROM chooser_snapshot WHERE intentKey = :intentKey ORDER BY position")
+    abstract fun snapshotOf(intentKey: String): List<ChooserSnapshot>
+
+    /**
+     * Also drops all but the [maxSnapshots] latest snapshots.
+     */
+    @Transaction
+    open fun replace(intentKey: String, snapshot: List<ChooserSnapshot>, maxSnapshots: Int) {
+        delete(intentKey)
+        insert(snapshot)
+        keepLatest(maxSnapshots)
+    }
+
+    @Insert
+    abstract fun insert(snapshot: List<ChooserSnapshot>)
+
+    @Query("DELETE FROM chooser_snapshot WHERE intentKey = :intentKey")
+    abstract fun delete(intentKey: String)
+
+    @Query(
+        """DELETE FROM chooser_snapshot WHERE intentKey IN (
+            SELECT intentKey FROM chooser_snapshot
+            WHERE substr(component, 1, length(:packageName) + 1) = :packageName || '/'
+        )"""
+    )
+    abstract fun deleteWithPackage(packageName: String)
+
+    @Query("DELETE FROM chooser_snapshot")
+    abstract fun deleteAll()
+
+    @Query(
+        """DELETE FROM chooser_snapshot WHERE intentKey NOT IN (
+            SELECT intentKey FROM chooser_snapshot GROUP BY intentKey ORDER BY MAX(savedAt) DESC LIMIT :count
+        )"""
+    )
+    abstract fun keepLatest(count: Int)
+}
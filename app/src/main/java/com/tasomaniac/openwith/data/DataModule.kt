@@ -3,6 +3,13 @@ package com.tasomaniac.openwith.data
 import android.app.Application
 import androidx.room.Room
 import com.tasomaniac.openwith.data.migrations.Migration1to2
+import com.tasomaniac.openwith.data.migrations.Migration2to3
+import com.tasomaniac.openwith.data.migrations.Migration3to4
+import com.tasomaniac.openwith.data.migrations.Migration4to5
+import com.tasomaniac.openwith.data.migrations.Migration5to6
+import com.tasomaniac.openwith.data.migrations.Migration6to7
+import com.tasomaniac.openwith.data.migrations.Migration7to8
+import com.tasomaniac.openwith.data.migrations.Migration8to9
 import dagger.Module
 import dagger.Provides
 import javax.inject.Singleton
@@ -15,10 +22,43 @@ object DataModule {
     @JvmStatic
     fun room(app: Application): Database =
         Room.databaseBuilder(app, Database::class.java, "openWithDatabase.db")
-            .addMigrations(Migration1to2)
+            .addMigrations(
+                Migration1to2,
+                Migration2to3,
+                Migration3to4,
+                Migration4to5,
+                Migration5to6,
+                Migration6to7,
+                Migration7to8,
+                Migration8to9
+            )
             .build()
 
     @Provides
     @JvmStatic
     fun preferredAppDao(database: Database) = database.preferredAppDao()
+
+    @Provides
+    @JvmStatic
+    fun chooserSnapshotDao(database: Database) = database.chooserSnapshotDao()
+
+    @Provides
+    @JvmStatic
+    fun redirectDao(database: Database) = database.redirectDao()
+
+    @Provides
+    @JvmStatic
+    fun pageMetadataDao(database: Database) = database.pageMetadataDao()
+
+    @Provides
+    @JvmStatic
+    fun chooserHistoryDao(database: Database) = database.chooserHistoryDao()
+
+    @Provides
+    @JvmStatic
+    fun chooserScoreDao(database: Database) = database.chooserScoreDao()
+
+    @Provides
+    @JvmStatic
+    fun packageUsageDao(database: Database) = database.packageUsageDao()
 }
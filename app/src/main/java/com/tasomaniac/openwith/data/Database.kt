@@ -3,8 +3,32 @@ package com.tasomaniac.openwith.data
 import androidx.room.Database
 import androidx.room.RoomDatabase
 
-@Database(entities = [PreferredApp::class], version = 2, exportSchema = false)
+@Database(
+    entities = [
+        PreferredApp::class,
+        ChooserSnapshot::class,
+        Redirect::class,
+        PageMetadata::class,
+        ChooserHistoryEntry::class,
+        ChooserScore::class,
+        PackageUsage::class
+    ],
+    version = 9,
+    exportSchema = false
+)
 abstract class Database : RoomDatabase() {
 
     abstract fun preferredAppDao(): PreferredAppDao
+
+    abstract fun chooserSnapshotDao(): ChooserSnapshotDao
+
+    abstract fun redirectDao(): RedirectDao
+
+    abstract fun pageMetadataDao(): PageMetadataDao
+
+    abstract fun chooserHistoryDao(): ChooserHistoryDao
+
+    abstract fun chooserScoreDao(): ChooserScoreDao
+
+    abstract fun packageUsageDao(): PackageUsageDao
 }
@@ -0,0 +1,21 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Entity
+
+/**
+ * Time apps from [packageName] spent in the foreground on the [day] since the epoch.
+ */
+@Entity(
+    tableName = "package_usage",
+    primaryKeys = ["packageName", "day"]
+)
+data class PackageUsage(
+    val packageName: String,
+    val day: Long,
+    val foregroundMillis: Long
+)
+
+data class PackageUsageTotal(
+    val packageName: String,
+    val foregroundMillis: Long
+)
@@ -0,0 +1,41 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+import androidx.room.Transaction
+
+@Dao
+abstract class PackageUsageDao {
+
+    @Query(
+        "SELECT packageName, SUM(foregroundMillis) AS foregroundMillis FROM package_usage " +
+            "WHERE day >= :fromDay GROUP BY packageName"
+    )
+    abstract fun totalsSince(fromDay: Long): List<PackageUsageTotal>
+
+    /**
+     * Adds the usages to the rows of their days, touching only those rows.
+     */
+    @Transaction
+    open fun add(usages: List<PackageUsage>, deleteBeforeDay: Long) {
+        usages.forEach {
+            if (addToExisting(it.packageName, it.day, it.foregroundMillis) == 0) {
+                insert(it)
+            }
+        }
+        deleteBefore(deleteBeforeDay)
+    }
+
+    @Query(
+        "UPDATE package_usage SET foregroundMillis = foregroundMillis + :foregroundMillis " +
+            "WHERE packageName = :packageName AND day = :day"
+    )
+    abstract fun addToExisting(packageName: String, day: Long, foregroundMillis: Long): Int
+
+    @Insert
+    abstract fun insert(usage: PackageUsage)
+
+    @Query("DELETE FROM package_usage WHERE day < :day")
+    abstract fun deleteBefore(day: Long)
+}
@@ -0,0 +1,21 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Metadata of the page at [url] as of [fetchedAt], with the validators to revalidate it.
+ */
+@Entity(tableName = "page_metadata")
+data class PageMetadata(
+    @PrimaryKey val url: String,
+    val title: String?,
+    val ogTitle: String?,
+    val faviconUrl: String?,
+    val etag: String?,
+    val lastModified: String?,
+    val fetchedAt: Long
+) {
+
+    val displayTitle get() = title ?: ogTitle
+}
@@ -0,0 +1,19 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+
+@Dao
+interface PageMetadataDao {
+
+    @Query("SELECT * FROM page_metadata WHERE url = :url")
+    fun metadataOf(url: String): PageMetadata?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun insert(metadata: PageMetadata)
+
+    @Query("DELETE FROM page_metadata WHERE fetchedAt < :fetchedBefore")
+    fun deleteFetchedBefore(fetchedBefore: Long)
+}
@@ -0,0 +1,14 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * A [url] which is known to end up in [target] after following its redirects, until [expiresAt].
+ */
+@Entity(tableName = "redirect")
+data class Redirect(
+    @PrimaryKey val url: String,
+    val target: String,
+    val expiresAt: Long
+)
@@ -0,0 +1,19 @@
+package com.tasomaniac.openwith.data
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+
+@Dao
+interface RedirectDao {
+
+    @Query("SELECT * FROM redirect WHERE url = :url")
+    fun redirectOf(url: String): Redirect?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun insert(redirects: List<Redirect>)
+
+    @Query("DELETE FROM redirect WHERE expiresAt <= :now")
+    fun deleteExpired(now: Long)
+}
@@ -0,0 +1,12 @@
+@file:Suppress("MaxLineLength")
+
+package com.tasomaniac.openwith.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+object Migration2to3 : Migration(2, 3) {
+    override fun migrate(database: SupportSQLiteDatabase) = database.run {
+        execSQL("CREATE TABLE IF NOT EXISTS `chooser_snapshot` (`intentKey` TEXT NOT NULL, `component` TEXT NOT NULL, `position` INTEGER NOT NULL, `label` TEXT NOT NULL, `applicationLabel` TEXT, `iconPath` TEXT NOT NULL, `lastUpdateTime` INTEGER NOT NULL, `matchCategory` INTEGER NOT NULL, PRIMARY KEY(`intentKey`, `component`))")
+    }
+}
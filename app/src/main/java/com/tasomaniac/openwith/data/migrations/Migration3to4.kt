@@ -0,0 +1,12 @@
+@file:Suppress("MaxLineLength")
+
+package com.tasomaniac.openwith.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+object Migration3to4 : Migration(3, 4) {
+    override fun migrate(database: SupportSQLiteDatabase) = database.run {
+        execSQL("CREATE TABLE IF NOT EXISTS `redirect` (`url` TEXT NOT NULL, `target` TEXT NOT NULL, `expiresAt` INTEGER NOT NULL, PRIMARY KEY(`url`))")
+    }
+}
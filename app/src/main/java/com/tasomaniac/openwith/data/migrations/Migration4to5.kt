@@ -0,0 +1,12 @@
+@file:Suppress("MaxLineLength")
+
+package com.tasomaniac.openwith.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+object Migration4to5 : Migration(4, 5) {
+    override fun migrate(database: SupportSQLiteDatabase) = database.run {
+        execSQL("CREATE TABLE IF NOT EXISTS `page_metadata` (`url` TEXT NOT NULL, `title` TEXT, `ogTitle` TEXT, `faviconUrl` TEXT, `etag` TEXT, `lastModified` TEXT, `fetchedAt` INTEGER NOT NULL, PRIMARY KEY(`url`))")
+    }
+}
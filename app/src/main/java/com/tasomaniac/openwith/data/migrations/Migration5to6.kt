@@ -0,0 +1,12 @@
+@file:Suppress("MaxLineLength")
+
+package com.tasomaniac.openwith.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+object Migration5to6 : Migration(5, 6) {
+    override fun migrate(database: SupportSQLiteDatabase) = database.run {
+        execSQL("CREATE TABLE IF NOT EXISTS `chooser_history` (`packageName` TEXT NOT NULL, `timesChosen` INTEGER NOT NULL, PRIMARY KEY(`packageName`))")
+    }
+}
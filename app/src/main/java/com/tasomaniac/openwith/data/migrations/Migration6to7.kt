@@ -0,0 +1,12 @@
+@file:Suppress("MaxLineLength")
+
+package com.tasomaniac.openwith.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+object Migration6to7 : Migration(6, 7) {
+    override fun migrate(database: SupportSQLiteDatabase) = database.run {
+        execSQL("CREATE TABLE IF NOT EXISTS `chooser_score` (`host` TEXT NOT NULL, `component` TEXT NOT NULL, `score` REAL NOT NULL, `lastUsed` INTEGER NOT NULL, PRIMARY KEY(`host`, `component`))")
+    }
+}
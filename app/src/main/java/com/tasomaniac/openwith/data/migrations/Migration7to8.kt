@@ -0,0 +1,12 @@
+@file:Suppress("MaxLineLength")
+
+package com.tasomaniac.openwith.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+object Migration7to8 : Migration(7, 8) {
+    override fun migrate(database: SupportSQLiteDatabase) = database.run {
+        execSQL("CREATE TABLE IF NOT EXISTS `package_usage` (`packageName` TEXT NOT NULL, `day` INTEGER NOT NULL, `foregroundMillis` INTEGER NOT NULL, PRIMARY KEY(`packageName`, `day`))")
+    }
+}
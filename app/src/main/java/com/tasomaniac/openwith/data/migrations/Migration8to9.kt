@@ -0,0 +1,16 @@
+@file:Suppress("MaxLineLength")
+
+package com.tasomaniac.openwith.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Snapshots are only a preview of the chooser, so the ones saved under the previous keys are dropped.
+ */
+object Migration8to9 : Migration(8, 9) {
+    override fun migrate(database: SupportSQLiteDatabase) = database.run {
+        execSQL("DROP TABLE IF EXISTS `chooser_snapshot`")
+        execSQL("CREATE TABLE IF NOT EXISTS `chooser_snapshot` (`intentKey` TEXT NOT NULL, `component` TEXT NOT NULL, `position` INTEGER NOT NULL, `label` TEXT NOT NULL, `applicationLabel` TEXT, `iconPath` TEXT NOT NULL, `lastUpdateTime` INTEGER NOT NULL, `savedAt` INTEGER NOT NULL, PRIMARY KEY(`intentKey`, `component`))")
+    }
+}
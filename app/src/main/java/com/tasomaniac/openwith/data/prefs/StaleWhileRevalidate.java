@@ -0,0 +1,11 @@
+package com.tasomaniac.openwith.data.prefs;
+
+import javax.inject.Qualifier;
+import java.lang.annotation.Retention;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+@Qualifier
+@Retention(RUNTIME)
+public @interface StaleWhileRevalidate {
+}
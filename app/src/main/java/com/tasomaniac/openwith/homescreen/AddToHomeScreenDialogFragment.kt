@@ -7,7 +7,7 @@ import android.app.PendingIntent
 import android.content.DialogInterface
 import android.content.Intent
 import android.content.IntentSender
-import android.graphics.BitmapFactory
+import android.graphics.Bitmap
 import android.os.Build.VERSION_CODES.M
 import android.os.Bundle
 import android.text.Editable
@@ -27,8 +27,12 @@ import androidx.fragment.app.FragmentManager
 import com.tasomaniac.android.widget.DelayedProgressBar
 import com.tasomaniac.openwith.R
 import com.tasomaniac.openwith.resolver.DisplayActivityInfo
+import com.tasomaniac.openwith.rx.SchedulingStrategy
 import com.tasomaniac.openwith.util.Intents
 import dagger.android.support.DaggerAppCompatDialogFragment
+import io.reactivex.Single
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.rxkotlin.addTo
 import timber.log.Timber
 import javax.inject.Inject
 
@@ -36,10 +40,17 @@ import javax.inject.Inject
 class AddToHomeScreenDialogFragment : DaggerAppCompatDialogFragment() {
 
     @Inject lateinit var titleFetcher: TitleFetcher
+    @Inject lateinit var siteIconFetcher: SiteIconFetcher
+    @Inject lateinit var shortcutIconCreator: ShortcutIconCreator
+    @Inject lateinit var scheduling: SchedulingStrategy
 
-    private lateinit var shortcutIconCreator: ShortcutIconCreator
     private lateinit var titleView: EditText
     private lateinit var progressBar: DelayedProgressBar
+    private var filledTitle: String? = null
+    private val disposables = CompositeDisposable()
+    private var appShortcutIcon: Bitmap? = null
+    private var siteShortcutIcon: Bitmap? = null
+    private var siteIconUrl: String? = null
 
     private val activityToAdd: DisplayActivityInfo
         get() = arguments!!.getParcelable(KEY_ACTIVITY_TO_ADD)!!
@@ -52,19 +63,18 @@ class AddToHomeScreenDialogFragment : DaggerAppCompatDialogFragment() {
     override fun onStart() {
         super.onStart()
         onTitleChanged(titleView.text)
-        shortcutIconCreator = ShortcutIconCreator(BitmapFactory.decodeResource(resources, R.drawable.ic_bookmark))
+        if (appShortcutIcon == null) {
+            createAppShortcutIcon()
+        }
 
         if (titleView.text.isEmpty()) {
             showProgressBar()
             titleFetcher.fetch(
                 intent.dataString!!,
-                { title ->
+                { metadata ->
                     hideProgressBar()
-                    if (title != null && titleView.text.isEmpty()) {
-                        titleView.post {
-                            titleView.append(title)
-                        }
-                    }
+                    metadata.displayTitle?.let { title -> titleView.post { fillTitle(title) } }
+                    metadata.faviconUrl?.let { iconUrl -> titleView.post { createSiteShortcutIcon(iconUrl) } }
                 },
                 ::hideProgressBar
             )
@@ -87,8 +97,53 @@ class AddToHomeScreenDialogFragment : DaggerAppCompatDialogFragment() {
         })
     }
 
+    /**
+     * A cached title is replaced by the refreshed one, unless it has been edited in the meantime.
+     */
+    private fun fillTitle(title: String) {
+        val text = titleView.text.toString()
+        if (text.isEmpty() || text == filledTitle) {
+            titleView.setText(title)
+            titleView.setSelection(title.length)
+            filledTitle = title
+        }
+    }
+
+    private fun createAppShortcutIcon() {
+        val appIcon = activityToAdd.displayIcon ?: return
+        Single.fromCallable { shortcutIconCreator.createBitmapFor(appIcon) }
+            .compose(scheduling.forSingle())
+            .subscribe { icon ->
+                appShortcutIcon?.let(shortcutIconCreator::recycle)
+                appShortcutIcon = icon
+            }
+            .addTo(disposables)
+    }
+
+    /**
+     * The shortcut gets the icon of the site, badged with the icon of the app, once it is downloaded.
+     */
+    private fun createSiteShortcutIcon(iconUrl: String) {
+        if (iconUrl == siteIconUrl) return
+        siteIconUrl = iconUrl
+        val appIcon = activityToAdd.displayIcon
+        siteIconFetcher.fetch(iconUrl)
+            .map { siteIcon ->
+                shortcutIconCreator.createBitmapFor(siteIcon, appIcon).also { shortcutIconCreator.recycle(siteIcon) }
+            }
+            .compose(scheduling.forMaybe())
+            .subscribe({ icon ->
+                siteShortcutIcon?.let(shortcutIconCreator::recycle)
+                siteShortcutIcon = icon
+            }, { Timber.w(it, "Couldn't load the icon of %s", iconUrl) })
+            .addTo(disposables)
+    }
+
     override fun onDestroy() {
         titleFetcher.cancel()
+        disposables.dispose()
+        appShortcutIcon?.let(shortcutIconCreator::recycle)
+        siteShortcutIcon?.let(shortcutIconCreator::recycle)
         super.onDestroy()
     }
 
@@ -140,9 +195,7 @@ class AddToHomeScreenDialogFragment : DaggerAppCompatDialogFragment() {
         }
 
         return try {
-            activityToAdd.displayIcon?.let {
-                createShortcutWith(shortcutIconCreator.createIconFor(it))
-            } ?: createShortcutWith(createSimpleIcon())
+            createShortcutWith(createShortcutIcon())
         } catch (e: Exception) {
             // This method started to fire android.os.TransactionTooLargeException
             Timber.e(e, "Exception while adding shortcut")
@@ -150,6 +203,13 @@ class AddToHomeScreenDialogFragment : DaggerAppCompatDialogFragment() {
         }
     }
 
+    private fun createShortcutIcon(): IconCompat {
+        val bitmap = siteShortcutIcon ?: appShortcutIcon ?: activityToAdd.displayIcon?.let { appIcon ->
+            shortcutIconCreator.createBitmapFor(appIcon).also { appShortcutIcon = it }
+        }
+        return bitmap?.let { IconCompat.createWithBitmap(it) } ?: createSimpleIcon()
+    }
+
     private fun createSimpleIcon(): IconCompat =
         IconCompat.createWithResource(requireContext(), R.mipmap.ic_launcher_bookmark)
 
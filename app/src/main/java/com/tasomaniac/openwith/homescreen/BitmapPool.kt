@@ -0,0 +1,62 @@
+package com.tasomaniac.openwith.homescreen
+
+import android.graphics.Bitmap
+import android.graphics.Bitmap.Config.ARGB_8888
+import android.graphics.Bitmap.Config.RGB_565
+import android.graphics.Color
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Mutable bitmaps to draw shortcut icons on and to decode site icons into,
+ * so that adding shortcuts doesn't allocate new launcher sized bitmaps each time.
+ */
+@Singleton
+class BitmapPool @Inject constructor() {
+
+    private val bitmaps = ArrayList<Bitmap>(MAX_POOLED)
+
+    /**
+     * @return a cleared bitmap of the given size and [config], reconfiguring a pooled one when possible.
+     */
+    @Synchronized
+    fun get(width: Int, height: Int, config: Bitmap.Config): Bitmap {
+        val bitmap = take { it.width == width && it.height == height && it.config == config }
+            ?: take { it.allocationByteCount >= width * height * bytesPerPixelOf(config) }
+                ?.apply { reconfigure(width, height, config) }
+        return bitmap?.apply { eraseColor(Color.TRANSPARENT) } ?: Bitmap.createBitmap(width, height, config)
+    }
+
+    /**
+     * @return a pooled bitmap to decode into with [android.graphics.BitmapFactory.Options.inBitmap],
+     * if one is large enough.
+     */
+    @Synchronized
+    fun reusableFor(width: Int, height: Int): Bitmap? =
+        take { it.allocationByteCount >= width * height * bytesPerPixelOf(ARGB_8888) }
+
+    /**
+     * Gives [bitmap] back to be reused. It shouldn't be used by the caller anymore.
+     */
+    @Synchronized
+    fun put(bitmap: Bitmap) {
+        if (!bitmap.isMutable || bitmap.isRecycled || bitmap in bitmaps) return
+        if (bitmaps.size == MAX_POOLED) {
+            bitmaps.removeAt(0).recycle()
+        }
+        bitmaps.add(bitmap)
+    }
+
+    private fun bytesPerPixelOf(config: Bitmap.Config) = if (config == RGB_565) RGB_565_BYTES else ARGB_8888_BYTES
+
+    private inline fun take(predicate: (Bitmap) -> Boolean): Bitmap? {
+        val index = bitmaps.indexOfFirst(predicate)
+        return if (index >= 0) bitmaps.removeAt(index) else null
+    }
+
+    companion object {
+        private const val MAX_POOLED = 4
+        private const val ARGB_8888_BYTES = 4
+        private const val RGB_565_BYTES = 2
+    }
+}
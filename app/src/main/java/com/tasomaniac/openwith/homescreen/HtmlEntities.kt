@@ -0,0 +1,67 @@
+package com.tasomaniac.openwith.homescreen
+
+/**
+ * Decodes the character references which show up in page titles.
+ * Unknown or malformed references are kept as they are.
+ */
+internal object HtmlEntities {
+
+    private const val MAX_REFERENCE_LENGTH = 10
+    private const val HEX_RADIX = 16
+
+    private val NAMED = mapOf(
+        "amp" to "&",
+        "lt" to "<",
+        "gt" to ">",
+        "quot" to "\"",
+        "apos" to "'",
+        "nbsp" to " ",
+        "ndash" to "–",
+        "mdash" to "—",
+        "hellip" to "…",
+        "laquo" to "«",
+        "raquo" to "»",
+        "copy" to "©",
+        "reg" to "®",
+        "trade" to "™"
+    )
+
+    fun decode(text: String): String {
+        if (text.indexOf('&') < 0) return text
+        val decoded = StringBuilder(text.length)
+        var i = 0
+        while (i < text.length) {
+            val end = if (text[i] == '&') referenceEnd(text, i) else -1
+            val replacement = if (end > 0) replacementOf(text.substring(i + 1, end)) else null
+            if (replacement != null) {
+                decoded.append(replacement)
+                i = end + 1
+            } else {
+                decoded.append(text[i])
+                i++
+            }
+        }
+        return decoded.toString()
+    }
+
+    /**
+     * @return the index of the `;` closing the reference starting at [start], or -1 if there is none nearby.
+     */
+    private fun referenceEnd(text: String, start: Int): Int {
+        val limit = minOf(text.length, start + MAX_REFERENCE_LENGTH + 1)
+        for (i in start + 1 until limit) {
+            if (text[i] == ';') return i
+        }
+        return -1
+    }
+
+    private fun replacementOf(reference: String): String? {
+        if (!reference.startsWith("#")) return NAMED[reference]
+        val codePoint = if (reference.startsWith("#x", ignoreCase = true)) {
+            reference.substring(2).toIntOrNull(HEX_RADIX)
+        } else {
+            reference.substring(1).toIntOrNull()
+        }
+        return codePoint?.takeIf { Character.isValidCodePoint(it) }?.let { String(Character.toChars(it)) }
+    }
+}
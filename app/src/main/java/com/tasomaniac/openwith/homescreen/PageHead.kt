@@ -0,0 +1,20 @@
+package com.tasomaniac.openwith.homescreen
+
+/**
+ * What is found in the head of a page, as it is written in the page.
+ *
+ * @param iconUrl of the touch icon, or of the favicon when there is no touch icon.
+ * @param imageUrl of the `og:image` of the page.
+ * Both may be relative to the url of the page.
+ */
+data class PageHead(
+    val title: String?,
+    val ogTitle: String?,
+    val iconUrl: String?,
+    val imageUrl: String?
+) {
+
+    val displayTitle get() = title ?: ogTitle
+
+    val displayIconUrl get() = iconUrl ?: imageUrl
+}
@@ -1,63 +1,116 @@
 package com.tasomaniac.openwith.homescreen;
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
-import androidx.core.graphics.drawable.IconCompat;
+import androidx.annotation.Nullable;
+import com.tasomaniac.openwith.R;
+
+import javax.inject.Inject;
 
 import static android.graphics.Bitmap.Config.ARGB_8888;
+import static android.graphics.Bitmap.Config.RGB_565;
 
+/**
+ * Draws shortcut icons on bitmaps of the {@link ShortcutIconSize} from the {@link BitmapPool},
+ * whatever the intrinsic size of the icons is.
+ * Opaque icons are drawn on {@code RGB_565} bitmaps, which take half the memory.
+ * Drawing doesn't change the given drawables, so it can be done off the main thread.
+ */
 class ShortcutIconCreator {
 
-    private final Bitmap shortcutMark;
+    private static final int BADGE_RATIO = 3;
+
+    private final Resources resources;
+    private final BitmapPool bitmapPool;
+    private final int iconSize;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    @Nullable private Bitmap shortcutMark;
 
-    ShortcutIconCreator(Bitmap shortcutMark) {
-        this.shortcutMark = shortcutMark;
+    @Inject
+    ShortcutIconCreator(Resources resources, BitmapPool bitmapPool, ShortcutIconSize shortcutIconSize) {
+        this.resources = resources;
+        this.bitmapPool = bitmapPool;
+        this.iconSize = shortcutIconSize.getPixels();
     }
 
-    IconCompat createIconFor(Drawable drawable) {
-        return IconCompat.createWithBitmap(createBitmapFor(drawable));
+    Bitmap createBitmapFor(Drawable drawable) {
+        boolean opaque = drawable.getOpacity() == PixelFormat.OPAQUE;
+        Bitmap bitmap = bitmapPool.get(iconSize, iconSize, opaque ? RGB_565 : ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawCopyOf(drawable, canvas, new Rect(0, 0, iconSize, iconSize));
+        drawShortcutMark(canvas);
+        return bitmap;
     }
 
-    private Bitmap createBitmapFor(Drawable drawable) {
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
-            return mergeBitmaps(drawable, shortcutMark);
-        } else {
-            return convertToBitmap(drawable);
+    /**
+     * Draws the icon of a site, cropped to a square, with the icon of the app to open it with as a badge.
+     * The badge is at the bottom right, or at the bottom left when the shortcut mark takes that corner.
+     */
+    Bitmap createBitmapFor(Bitmap siteIcon, @Nullable Drawable appIcon) {
+        Bitmap bitmap = bitmapPool.get(iconSize, iconSize, siteIcon.hasAlpha() ? ARGB_8888 : RGB_565);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawBitmap(siteIcon, centerSquareOf(siteIcon), new Rect(0, 0, iconSize, iconSize), paint);
+
+        if (appIcon != null) {
+            int badgeSize = iconSize / BADGE_RATIO;
+            int left = needsShortcutMark() ? 0 : iconSize - badgeSize;
+            drawCopyOf(appIcon, canvas, new Rect(left, iconSize - badgeSize, left + badgeSize, iconSize));
         }
+        drawShortcutMark(canvas);
+        return bitmap;
     }
 
-    private Bitmap convertToBitmap(Drawable background) {
-        final int width = background.getIntrinsicWidth();
-        final int height = background.getIntrinsicHeight();
-
-        Bitmap bmOverlay = Bitmap.createBitmap(width, height, ARGB_8888);
-        Canvas canvas = new Canvas(bmOverlay);
+    void recycle(Bitmap bitmap) {
+        bitmapPool.put(bitmap);
+    }
 
-        background.draw(canvas);
-        return bmOverlay;
+    /**
+     * The drawable may be on the screen at the same time, so its bounds are left as they are.
+     */
+    private void drawCopyOf(Drawable drawable, Canvas canvas, Rect target) {
+        Drawable.ConstantState state = drawable.getConstantState();
+        Drawable copy = state != null ? state.newDrawable(resources).mutate() : drawable;
+        Rect bounds = copy.copyBounds();
+        copy.setBounds(target);
+        copy.draw(canvas);
+        copy.setBounds(bounds);
     }
 
-    private static Bitmap mergeBitmaps(Drawable background, Bitmap overlay) {
-        final int width = background.getIntrinsicWidth();
-        final int height = background.getIntrinsicHeight();
-        int overlayWidth = overlay.getWidth();
-        int overlayHeight = overlay.getHeight();
-        int left = width - overlayWidth;
-        int top = height - overlayHeight;
+    /**
+     * Launchers before O don't mark pinned shortcuts themselves, so the mark is drawn on the icon.
+     */
+    private void drawShortcutMark(Canvas canvas) {
+        if (needsShortcutMark()) {
+            Bitmap overlay = shortcutMark();
+            canvas.drawBitmap(overlay, iconSize - overlay.getWidth(), iconSize - overlay.getHeight(), paint);
+        }
+    }
 
-        Bitmap bmOverlay = Bitmap.createBitmap(width, height, ARGB_8888);
-        Canvas canvas = new Canvas(bmOverlay);
+    private static boolean needsShortcutMark() {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.O;
+    }
 
-        Paint paint = new Paint();
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER));
+    private static Rect centerSquareOf(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int size = Math.min(width, height);
+        int left = (width - size) / 2;
+        int top = (height - size) / 2;
+        return new Rect(left, top, left + size, top + size);
+    }
 
-        background.draw(canvas);
-        canvas.drawBitmap(overlay, left, top, paint);
-        return bmOverlay;
+    private synchronized Bitmap shortcutMark() {
+        if (shortcutMark == null) {
+            shortcutMark = BitmapFactory.decodeResource(resources, R.drawable.ic_bookmark);
+        }
+        return shortcutMark;
     }
 }
@@ -0,0 +1,41 @@
+package com.tasomaniac.openwith.homescreen
+
+import android.app.ActivityManager
+import android.app.Application
+import android.content.pm.ShortcutManager
+import android.os.Build.VERSION.SDK_INT
+import android.os.Build.VERSION_CODES.N_MR1
+import androidx.core.content.getSystemService
+import javax.inject.Inject
+
+/**
+ * Side of the bitmaps of shortcut icons in pixels.
+ *
+ * It is the size the launcher shows shortcut icons at, bounded so that even an `ARGB_8888` icon
+ * stays well below the limit of the binder transaction which pins the shortcut.
+ */
+class ShortcutIconSize @Inject constructor(app: Application, activityManager: ActivityManager) {
+
+    val pixels = boundedSize(launcherSizeOf(app) ?: activityManager.launcherLargeIconSize)
+
+    private fun launcherSizeOf(app: Application): Int? =
+        if (SDK_INT >= N_MR1) {
+            app.getSystemService<ShortcutManager>()?.let { maxOf(it.iconMaxWidth, it.iconMaxHeight) }
+        } else {
+            null
+        }
+
+    companion object {
+        /**
+         * A quarter of the 1MB binder transaction buffer, which is shared by the whole process.
+         */
+        const val MAX_ICON_BYTES = 256 * 1024
+        private const val MAX_BYTES_PER_PIXEL = 4
+
+        @JvmStatic
+        fun boundedSize(size: Int): Int {
+            val maxSize = Math.sqrt((MAX_ICON_BYTES / MAX_BYTES_PER_PIXEL).toDouble()).toInt()
+            return size.coerceIn(1, maxSize)
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.tasomaniac.openwith.homescreen
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import io.reactivex.Maybe
+import okhttp3.CacheControl
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import java.util.concurrent.TimeUnit.DAYS
+import javax.inject.Inject
+
+/**
+ * Downloads the icon of a page and decodes it only as large as a shortcut icon needs.
+ *
+ * Icons go through the HTTP cache of the client, where a stale one is preferred over downloading it again.
+ */
+class SiteIconFetcher(
+    private val client: OkHttpClient,
+    private val bitmapPool: BitmapPool,
+    private val iconSize: Int
+) {
+
+    @Inject constructor(
+        client: OkHttpClient,
+        bitmapPool: BitmapPool,
+        shortcutIconSize: ShortcutIconSize
+    ) : this(client, bitmapPool, shortcutIconSize.pixels)
+
+    /**
+     * Completes empty when there is no icon which can be decoded at [iconUrl].
+     * The icon can be given back to the [BitmapPool] once it is drawn.
+     */
+    fun fetch(iconUrl: String): Maybe<Bitmap> = Maybe.fromCallable { download(iconUrl)?.let(::decode) }
+
+    private fun download(iconUrl: String): ByteArray? {
+        val request = Request.Builder()
+            .url(iconUrl)
+            .cacheControl(CacheControl.Builder().maxStale(MAX_STALE_DAYS, DAYS).build())
+            .build()
+        return client.newCall(request).execute().use { response ->
+            val source = response.body()?.source()
+            if (response.isSuccessful && source != null && !source.request(MAX_BYTES + 1)) {
+                source.readByteArray()
+            } else {
+                null
+            }
+        }
+    }
+
+    private fun decode(bytes: ByteArray): Bitmap? {
+        val options = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.size, options)
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null
+
+        val sampleSize = sampleSizeFor(options.outWidth, options.outHeight, iconSize)
+        val width = options.outWidth.divideRoundingUp(sampleSize)
+        val height = options.outHeight.divideRoundingUp(sampleSize)
+        val pooled = bitmapPool.reusableFor(width, height)
+        options.apply {
+            inJustDecodeBounds = false
+            inSampleSize = sampleSize
+            inMutable = true
+            inBitmap = pooled
+        }
+        val decoded = try {
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.size, options)
+        } catch (e: IllegalArgumentException) {
+            // The pooled bitmap can't be reused for this image
+            options.inBitmap = null
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.size, options)
+        }
+        if (pooled != null && decoded !== pooled) {
+            bitmapPool.put(pooled)
+        }
+        return decoded
+    }
+
+    private fun Int.divideRoundingUp(divisor: Int) = (this + divisor - 1) / divisor
+
+    companion object {
+        private const val MAX_BYTES = 512L * 1024
+        private const val MAX_STALE_DAYS = 7
+
+        /**
+         * @return the largest power of two which keeps both sides at least [targetSize].
+         */
+        @JvmStatic
+        fun sampleSizeFor(width: Int, height: Int, targetSize: Int): Int {
+            var sampleSize = 1
+            while (width / (sampleSize * 2) >= targetSize && height / (sampleSize * 2) >= targetSize) {
+                sampleSize *= 2
+            }
+            return sampleSize
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.tasomaniac.openwith.homescreen
+
+import okio.Buffer
+import okio.BufferedSource
+
+/**
+ * Finds the title of an HTML page while it streams in.
+ *
+ * The page is tokenized only as far as the `<title>`, the `og:title` and `og:image` meta tags
+ * and the touch icon link are found.
+ * It stops at the end of the head, or after [maxBytes], so the rest of the page is never downloaded.
+ */
+class TitleExtractor(private val maxBytes: Long = DEFAULT_MAX_BYTES) {
+
+    fun extract(source: BufferedSource): String? = extractHead(source).displayTitle
+
+    fun extractHead(source: BufferedSource): PageHead = Tokenizer(source, maxBytes).readHead()
+
+    private class Tokenizer(private val source: BufferedSource, private val maxBytes: Long) {
+
+        private var bytesRead = 0L
+        private var pushedBack = EOF
+        private var done = false
+        private var title: String? = null
+        private var ogTitle: String? = null
+        private var iconUrl: String? = null
+        private var touchIcon = false
+        private var imageUrl: String? = null
+
+        fun readHead(): PageHead {
+            while (!done && skipPast('<')) {
+                readMarkup()
+            }
+            return PageHead(title, ogTitle, iconUrl, imageUrl)
+        }
+
+        private fun readMarkup() {
+            val c = read()
+            when {
+                c == '!'.toInt() -> skipDeclaration()
+                c == '?'.toInt() -> skipPast('>')
+                c == '/'.toInt() -> readEndTag()
+                isLetter(c) -> {
+                    pushBack(c)
+                    readStartTag()
+                }
+                else -> pushBack(c)
+            }
+        }
+
+        private fun skipDeclaration() {
+            val first = read()
+            if (first == '-'.toInt() && read() == '-'.toInt()) {
+                skipComment()
+            } else {
+                pushBack(first)
+                skipPast('>')
+            }
+        }
+
+        private fun skipComment() {
+            var dashes = 0
+            var c = read()
+            while (c != EOF) {
+                if (c == '>'.toInt() && dashes >= 2) return
+                dashes = if (c == '-'.toInt()) dashes + 1 else 0
+                c = read()
+            }
+        }
+
+        private fun readEndTag() {
+            val name = readName()
+            skipPast('>')
+            if (name == "head") {
+                done = true
+            }
+        }
+
+        private fun readStartTag() {
+            val name = readName()
+            val attributes = readAttributes()
+            when (name) {
+                "title" -> readTitle()
+                "meta" -> readMeta(attributes)
+                "link" -> readLink(attributes)
+                "script", "style" -> readRawText(name, keep = false)
+                "body" -> done = true
+            }
+        }
+
+        private fun readTitle() {
+            val text = readRawText("title", keep = true)
+            if (title == null) {
+                title = text?.let(::clean)
+            }
+            checkDone()
+        }
+
+        private fun readMeta(attributes: Map<String, String>) {
+            val property = attributes["property"] ?: attributes["name"]
+            if (ogTitle == null && property.equals(OG_TITLE, ignoreCase = true)) {
+                ogTitle = attributes["content"]?.let(::clean)
+            }
+            if (imageUrl == null && property.equals(OG_IMAGE, ignoreCase = true)) {
+                imageUrl = attributes["content"]?.let(::clean)
+            }
+            checkDone()
+        }
+
+        /**
+         * Touch icons are preferred over favicons, as they are large enough for the launcher.
+         */
+        private fun readLink(attributes: Map<String, String>) {
+            val rel = attributes["rel"].orEmpty().toLowerCase().split(' ', '\t', '\n')
+            val href = attributes["href"]?.let(::clean)
+            if (href != null && !touchIcon && rel.any { it in ICON_RELS }) {
+                touchIcon = rel.any { it in TOUCH_ICON_RELS }
+                if (touchIcon || iconUrl == null) iconUrl = href
+            }
+            checkDone()
+        }
+
+        private fun checkDone() {
+            if (title != null && ogTitle != null && touchIcon && imageUrl != null) {
+                done = true
+            }
+        }
+
+        /**
+         * @return the decoded text, or null if there is nothing in it.
+         */
+        private fun clean(text: String): String? =
+            HtmlEntities.decode(text).collapseWhitespace().takeIf { it.isNotEmpty() }
+
+        private fun readName(): String {
+            val name = StringBuilder()
+            var c = read()
+            while (isLetter(c) || isDigit(c) || c == '-'.toInt() || c == ':'.toInt()) {
+                name.append(c.toChar().toLowerCase())
+                c = read()
+            }
+            pushBack(c)
+            return name.toString()
+        }
+
+        /**
+         * Reads the attributes of a tag, and the closing `>`.
+         */
+        private fun readAttributes(): Map<String, String> {
+            val attributes = HashMap<String, String>()
+            while (true) {
+                val c = skipWhitespace()
+                if (c == EOF || c == '>'.toInt()) return attributes
+                if (c != '/'.toInt()) {
+                    pushBack(c)
+                    val name = readAttributeName()
+                    val next = skipWhitespace()
+                    if (next == '='.toInt()) {
+                        attributes[name] = readAttributeValue()
+                    } else {
+                        pushBack(next)
+                        attributes[name] = ""
+                    }
+                }
+            }
+        }
+
+        private fun readAttributeName(): String {
+            val name = StringBuilder()
+            var c = read()
+            while (c != EOF && !isWhitespace(c) && c != '='.toInt() && c != '>'.toInt() && c != '/'.toInt()) {
+                name.append(c.toChar().toLowerCase())
+                c = read()
+            }
+            pushBack(c)
+            return name.toString()
+        }
+
+        private fun readAttributeValue(): String {
+            val value = Buffer()
+            val quote = skipWhitespace()
+            if (quote == '"'.toInt() || quote == '\''.toInt()) {
+                var c = read()
+                while (c != EOF && c != quote) {
+                    value.writeByte(c)
+                    c = read()
+                }
+            } else {
+                var c = quote
+                while (c != EOF && !isWhitespace(c) && c != '>'.toInt()) {
+                    value.writeByte(c)
+                    c = read()
+                }
+                pushBack(c)
+            }
+            return value.readUtf8()
+        }
+
+        /**
+         * Reads the text until the end tag of [name], which may be split across lines and buffers.
+         *
+         * @return the text, or null if the end tag isn't reached.
+         */
+        private fun readRawText(name: String, keep: Boolean): String? {
+            val endTag = "</$name"
+            val text = Buffer()
+            var matched = 0
+            var c = read()
+            while (c != EOF) {
+                if (keep) text.writeByte(c)
+                matched = when {
+                    c.toChar().toLowerCase() == endTag[matched] -> matched + 1
+                    c == '<'.toInt() -> 1
+                    else -> 0
+                }
+                if (matched == endTag.length) {
+                    skipPast('>')
+                    return if (keep) text.readUtf8(text.size() - endTag.length) else ""
+                }
+                c = read()
+            }
+            return null
+        }
+
+        private fun skipPast(target: Char): Boolean {
+            var c = read()
+            while (c != EOF) {
+                if (c == target.toInt()) return true
+                c = read()
+            }
+            return false
+        }
+
+        private fun skipWhitespace(): Int {
+            var c = read()
+            while (isWhitespace(c)) {
+                c = read()
+            }
+            return c
+        }
+
+        private fun read(): Int {
+            if (pushedBack != EOF) {
+                val c = pushedBack
+                pushedBack = EOF
+                return c
+            }
+            if (bytesRead >= maxBytes || !source.request(1)) {
+                done = true
+                return EOF
+            }
+            bytesRead++
+            return source.readByte().toInt() and BYTE_MASK
+        }
+
+        private fun pushBack(c: Int) {
+            pushedBack = c
+        }
+
+        private fun isLetter(c: Int) = c in 'a'.toInt()..'z'.toInt() || c in 'A'.toInt()..'Z'.toInt()
+
+        private fun isDigit(c: Int) = c in '0'.toInt()..'9'.toInt()
+
+        private fun isWhitespace(c: Int) =
+            c == ' '.toInt() || c == '\t'.toInt() || c == '\n'.toInt() || c == '\r'.toInt() || c == '\u000C'.toInt()
+
+        private fun String.collapseWhitespace(): String {
+            val collapsed = StringBuilder(length)
+            var pendingSpace = false
+            forEach { c ->
+                if (c.isWhitespace()) {
+                    pendingSpace = collapsed.isNotEmpty()
+                } else {
+                    if (pendingSpace) collapsed.append(' ')
+                    pendingSpace = false
+                    collapsed.append(c)
+                }
+            }
+            return collapsed.toString()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BYTES = 128L * 1024
+        private const val OG_TITLE = "og:title"
+        private const val OG_IMAGE = "og:image"
+        private val TOUCH_ICON_RELS = setOf("apple-touch-icon", "apple-touch-icon-precomposed")
+        private val ICON_RELS = TOUCH_ICON_RELS + "icon"
+        private const val EOF = -1
+        private const val BYTE_MASK = 0xFF
+    }
+}
@@ -3,77 +3,145 @@ package com.tasomaniac.openwith.homescreen
 import android.annotation.TargetApi
 import android.os.Build.VERSION_CODES.M
 import com.tasomaniac.openwith.PerActivity
+import com.tasomaniac.openwith.data.PageMetadata
+import com.tasomaniac.openwith.data.PageMetadataDao
+import com.tasomaniac.openwith.rx.SchedulingStrategy
+import io.reactivex.Maybe
+import io.reactivex.disposables.Disposable
 import okhttp3.Call
 import okhttp3.Callback
 import okhttp3.HttpUrl
 import okhttp3.OkHttpClient
 import okhttp3.Request
 import okhttp3.Response
-import okhttp3.ResponseBody
 import timber.log.Timber
 import java.io.IOException
-import java.util.regex.Pattern
+import java.net.HttpURLConnection.HTTP_NOT_MODIFIED
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.MINUTES
 import javax.inject.Inject
 
+/**
+ * Fetches the titles and icon urls of pages, keeping what is found in their heads in the [PageMetadataDao].
+ *
+ * Cached metadata is given right away. It is revalidated in the background with the validators of the page,
+ * so that an unchanged page isn't downloaded again.
+ */
 @TargetApi(M)
 @PerActivity
-class TitleFetcher @Inject constructor(private val client: OkHttpClient) {
+class TitleFetcher(
+    private val client: OkHttpClient,
+    private val pageMetadataDao: PageMetadataDao,
+    private val scheduling: SchedulingStrategy,
+    private val titleExtractor: TitleExtractor,
+    private val clock: () -> Long
+) {
 
+    @Inject constructor(
+        client: OkHttpClient,
+        pageMetadataDao: PageMetadataDao,
+        scheduling: SchedulingStrategy
+    ) : this(client, pageMetadataDao, scheduling, TitleExtractor(), System::currentTimeMillis)
+
+    private var lookup: Disposable? = null
     private var call: Call? = null
 
     fun cancel() {
+        lookup?.dispose()
         call?.cancel()
     }
 
-    fun fetch(url: String, onSuccess: (title: String?) -> Unit, onFailure: () -> Unit) {
-        call?.cancel()
+    /**
+     * [onSuccess] is called with the cached metadata first, if there is one,
+     * and again only if revalidating the page changes its title or icon.
+     * [onFailure] is only called when there is no cached metadata to fall back to.
+     */
+    fun fetch(url: String, onSuccess: (metadata: PageMetadata) -> Unit, onFailure: () -> Unit) {
+        cancel()
         val httpUrl = HttpUrl.parse(url) ?: return
-        call = client.newCall(request(httpUrl)).apply {
-            enqueue(object : Callback {
-                override fun onFailure(call: Call, e: IOException) = onFailure()
+        val fetch = Fetch(httpUrl, onSuccess, onFailure)
+        lookup = Maybe.fromCallable<PageMetadata> { pageMetadataDao.metadataOf(httpUrl.toString()) }
+            .compose(scheduling.forMaybe())
+            .subscribe(fetch::revalidate, { fetch.revalidate(null) }, { fetch.revalidate(null) })
+    }
+
+    private inner class Fetch(
+        private val httpUrl: HttpUrl,
+        private val onSuccess: (metadata: PageMetadata) -> Unit,
+        private val onFailure: () -> Unit
+    ) {
+
+        fun revalidate(cached: PageMetadata?) {
+            if (cached != null) {
+                onSuccess(cached)
+                if (clock() - cached.fetchedAt < FRESH_FOR_MILLIS) return
+            }
+            call = client.newCall(request(cached)).apply {
+                enqueue(object : Callback {
+                    override fun onFailure(call: Call, e: IOException) = failed(cached)
+
+                    override fun onResponse(call: Call, response: Response) = response.use { handle(it, cached) }
+                })
+            }
+        }
 
-                override fun onResponse(call: Call, response: Response) {
-                    if (!response.isSuccessful) {
-                        Timber.tag("Network").e("Fail with response: %s", response)
-                        onFailure()
-                    } else {
-                        response.body()!!.use { body -> onSuccess(body.extractTitle()) }
+        /**
+         * Conditional headers are passed as they are by the HTTP cache of the client, so a 304 comes back to here.
+         */
+        private fun request(cached: PageMetadata?) =
+            Request.Builder()
+                .url(httpUrl)
+                .header("User-Agent", "Mozilla/5.0 (Android; Mobile; rv:13.0) Gecko/13.0 Firefox/13.0")
+                .apply {
+                    cached?.etag?.let { header("If-None-Match", it) }
+                    cached?.lastModified?.let { header("If-Modified-Since", it) }
+                }
+                .build()
+
+        private fun handle(response: Response, cached: PageMetadata?) {
+            when {
+                response.code() == HTTP_NOT_MODIFIED && cached != null ->
+                    pageMetadataDao.insert(cached.copy(fetchedAt = clock()))
+                response.isSuccessful -> {
+                    val metadata = metadataOf(response)
+                    pageMetadataDao.deleteFetchedBefore(clock() - KEEP_FOR_MILLIS)
+                    pageMetadataDao.insert(metadata)
+                    if (cached == null || cached.changedIn(metadata)) {
+                        onSuccess(metadata)
                     }
                 }
-            })
+                else -> {
+                    Timber.tag("Network").e("Fail with response: %s", response)
+                    failed(cached)
+                }
+            }
         }
-    }
-
-    private fun request(httpUrl: HttpUrl) =
-        Request.Builder()
-            .url(httpUrl)
-            .header("User-Agent", "Mozilla/5.0 (Android; Mobile; rv:13.0) Gecko/13.0 Firefox/13.0")
-            .build()
 
-    @Suppress("NestedBlockDepth")
-    private fun ResponseBody.extractTitle(): String? {
-        val source = source()
-        val pattern = Pattern.compile(TITLE_PATTERN)
+        private fun metadataOf(response: Response): PageMetadata {
+            val head = titleExtractor.extractHead(response.body()!!.source())
+            return PageMetadata(
+                url = httpUrl.toString(),
+                title = head.title,
+                ogTitle = head.ogTitle,
+                faviconUrl = head.displayIconUrl?.let { response.request().url().resolve(it) }?.toString(),
+                etag = response.header("ETag"),
+                lastModified = response.header("Last-Modified"),
+                fetchedAt = clock()
+            )
+        }
 
-        var line = source.readUtf8Line()
-        while (line != null) {
-            val matcher = pattern.matcher(line)
-            if (!matcher.find()) {
-                continue
-            }
+        private fun PageMetadata.changedIn(metadata: PageMetadata) =
+            displayTitle != metadata.displayTitle || faviconUrl != metadata.faviconUrl
 
-            for (i in 1..matcher.groupCount()) {
-                val match = matcher.group(i)
-                if (match != null) return match
+        private fun failed(cached: PageMetadata?) {
+            if (cached == null) {
+                onFailure()
             }
-            line = source.readUtf8Line()
         }
-        return null
     }
 
     companion object {
-        @Suppress("MaxLineLength")
-        private const val TITLE_PATTERN =
-            "<title(?:\\s.*)?>(.+)</title>|<meta\\s*property=\"og:title\"\\s*content=\"(.*)\".*>|<meta\\s*content=\"(.*)\"\\s*property=\"og:title\".*>"
+        private val FRESH_FOR_MILLIS = MINUTES.toMillis(10)
+        private val KEEP_FOR_MILLIS = DAYS.toMillis(30)
     }
 }
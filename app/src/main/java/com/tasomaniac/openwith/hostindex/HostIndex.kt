@@ -0,0 +1,173 @@
+package com.tasomaniac.openwith.hostindex
+
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+
+/**
+ * Hosts, and path prefixes within them, mapped to the components which declare http filters for them.
+ *
+ * Filters are kept in parallel arrays sorted by host and path prefix, so finding the handlers of a link
+ * is a binary search instead of a query to the [android.content.pm.PackageManager].
+ */
+class HostIndex private constructor(
+    private val hosts: Array<String>,
+    private val pathPrefixes: Array<String>,
+    private val exactPrefixes: BooleanArray,
+    private val componentIndexes: IntArray,
+    private val components: Array<String>,
+    private val browserPackages: Array<String>
+) {
+
+    val size get() = hosts.size
+
+    /**
+     * @return the flattened names of the components with a filter for the host and path.
+     */
+    fun handlersOf(host: String, path: String): Set<String> {
+        val handlers = LinkedHashSet<String>()
+        forEachFilterOf(host) { index ->
+            if (path.startsWith(pathPrefixes[index])) {
+                handlers.add(components[componentIndexes[index]])
+            }
+        }
+        return handlers
+    }
+
+    /**
+     * @return true if no app other than the browsers declares a filter for the host and path.
+     */
+    fun hasOnlyBrowsers(host: String, path: String) =
+        handlersOf(host, path).all { browserPackages.binarySearch(packageOf(it)) >= 0 }
+
+    /**
+     * Paths of a host which start with the same longest path prefix of its filters are matched by the same filters,
+     * since all the other prefixes they start with are prefixes of that one.
+     *
+     * @return the longest path prefix of the filters of the host that the path starts with, empty if there is none,
+     * or null if a filter of the host matches only some of the paths starting with its prefix.
+     */
+    fun pathClassOf(host: String, path: String): String? {
+        var longest = ""
+        forEachFilterOf(host) { index ->
+            if (!exactPrefixes[index]) return null
+            val pathPrefix = pathPrefixes[index]
+            if (pathPrefix.length > longest.length && path.startsWith(pathPrefix)) {
+                longest = pathPrefix
+            }
+        }
+        return longest
+    }
+
+    /**
+     * @param filters of the package, or null if it is removed.
+     * @return a new index with the filters of [packageName] replaced.
+     */
+    fun updated(packageName: String, filters: PackageFilters?): HostIndex {
+        val kept = filters().filterNot { packageOf(it.component) == packageName }
+        val keptBrowsers = browserPackages.filterNot { it == packageName }
+        return of(
+            kept + filters?.hostFilters.orEmpty(),
+            if (filters?.isBrowser == true) keptBrowsers + packageName else keptBrowsers
+        )
+    }
+
+    private fun filters() = hosts.indices.map {
+        HostFilter(hosts[it], pathPrefixes[it], components[componentIndexes[it]], exactPrefixes[it])
+    }
+
+    /**
+     * Calls the [action] with the index of each filter whose host matches the [host].
+     */
+    private inline fun forEachFilterOf(host: String, action: (index: Int) -> Unit) =
+        forEachDomainOf(host.toLowerCase()) { domain ->
+            var index = firstIndexOf(domain)
+            while (index < hosts.size && hosts[index] == domain) {
+                action(index)
+                index++
+            }
+        }
+
+    /**
+     * The host itself, `*.` followed by each of its parent domains, and `*` for filters of any host.
+     */
+    private inline fun forEachDomainOf(host: String, action: (domain: String) -> Unit) {
+        action(host)
+        var dot = host.indexOf('.')
+        while (dot >= 0) {
+            action(WILDCARD + host.substring(dot + 1))
+            dot = host.indexOf('.', dot + 1)
+        }
+        action(ANY_HOST)
+    }
+
+    private fun firstIndexOf(host: String): Int {
+        var low = 0
+        var high = hosts.size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (hosts[middle] < host) low = middle + 1 else high = middle
+        }
+        return low
+    }
+
+    @Throws(IOException::class)
+    fun writeTo(output: DataOutputStream) {
+        output.writeInt(MAGIC)
+        output.writeInt(FORMAT_VERSION)
+        output.writeStrings(components)
+        output.writeStrings(browserPackages)
+        output.writeStrings(hosts)
+        output.writeStrings(pathPrefixes)
+        exactPrefixes.forEach { output.writeBoolean(it) }
+        componentIndexes.forEach { output.writeInt(it) }
+    }
+
+    private fun DataOutputStream.writeStrings(strings: Array<String>) {
+        writeInt(strings.size)
+        strings.forEach { writeUTF(it) }
+    }
+
+    companion object {
+        private const val MAGIC = 0x4F57484F
+        private const val FORMAT_VERSION = 3
+        private const val WILDCARD = "*."
+        private const val ANY_HOST = "*"
+
+        @JvmStatic
+        fun of(filters: Collection<HostFilter>, browserPackages: Collection<String>): HostIndex {
+            val sorted = filters
+                .map { it.copy(host = it.host.toLowerCase()) }
+                .distinct()
+                .sortedWith(compareBy({ it.host }, { it.pathPrefix }, { it.component }, { it.exact }))
+            val components = sorted.map { it.component }.distinct().sorted().toTypedArray()
+            return HostIndex(
+                Array(sorted.size) { sorted[it].host },
+                Array(sorted.size) { sorted[it].pathPrefix },
+                BooleanArray(sorted.size) { sorted[it].exact },
+                IntArray(sorted.size) { components.binarySearch(sorted[it].component) },
+                components,
+                browserPackages.distinct().sorted().toTypedArray()
+            )
+        }
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun readFrom(input: DataInputStream): HostIndex {
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                throw IOException("Not a host index of the current format")
+            }
+            val components = input.readStrings()
+            val browserPackages = input.readStrings()
+            val hosts = input.readStrings()
+            val pathPrefixes = input.readStrings()
+            val exactPrefixes = BooleanArray(hosts.size) { input.readBoolean() }
+            val componentIndexes = IntArray(hosts.size) { input.readInt() }
+            return HostIndex(hosts, pathPrefixes, exactPrefixes, componentIndexes, components, browserPackages)
+        }
+
+        private fun DataInputStream.readStrings() = Array(readInt()) { readUTF() }
+
+        private fun packageOf(component: String) = component.substringBefore('/')
+    }
+}
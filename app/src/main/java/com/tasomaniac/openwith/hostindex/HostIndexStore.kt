@@ -0,0 +1,180 @@
+package com.tasomaniac.openwith.hostindex
+
+import android.app.Application
+import android.content.pm.PackageManager
+import androidx.annotation.WorkerThread
+import com.tasomaniac.openwith.BuildConfig
+import com.tasomaniac.openwith.resolver.PackageChange
+import com.tasomaniac.openwith.resolver.PackageChangeMonitor
+import com.tasomaniac.openwith.rx.SchedulingStrategy
+import timber.log.Timber
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps the [HostIndex] of the installed packages in a file, so that their manifests are parsed only once.
+ *
+ * The index is built in the background the first time it is needed, and then updated one package at a time
+ * as packages are added, removed or modified. Changes are applied in the background too, and the index
+ * isn't given out until they are, so that it never answers for packages which already changed.
+ *
+ * Packages may change while the process is not running, so the file is saved with a stamp of
+ * the installed packages and their update times, and rebuilt when the stamp no longer matches.
+ * The stamp is a sum over the packages, so that a change only updates the part of its package.
+ */
+@Singleton
+class HostIndexStore @Inject constructor(
+    app: Application,
+    private val packageManager: PackageManager,
+    private val manifestParser: ManifestParser,
+    private val scheduling: SchedulingStrategy,
+    packageChangeMonitor: PackageChangeMonitor
+) {
+
+    private val file = File(app.filesDir, FILE_NAME)
+    private val loading = AtomicBoolean()
+    /**
+     * The last change of each package which isn't applied yet. Guarded by itself.
+     */
+    private val pendingChanges = LinkedHashMap<String, PackageChange>()
+    @Volatile private var index: HostIndex? = null
+
+    /**
+     * Update time of each package in the [index], guarded by this store like [stamp].
+     */
+    private val updateTimes = HashMap<String, Long>()
+    private var stamp = 0L
+
+    init {
+        packageChangeMonitor.changes().subscribe { change ->
+            synchronized(pendingChanges) { pendingChanges[change.packageName] = change }
+            scheduling.runOnExecutor { applyPendingChanges() }
+        }
+    }
+
+    /**
+     * @return the index, or null while it is being loaded, built or updated.
+     */
+    @WorkerThread
+    fun index(): HostIndex? {
+        val index = index
+        if (index == null && loading.compareAndSet(false, true)) {
+            scheduling.runOnExecutor { load() }
+        }
+        return index?.takeIf { synchronized(pendingChanges) { pendingChanges.isEmpty() } }
+    }
+
+    /**
+     * If loading fails, it is tried again the next time the index is needed.
+     */
+    private fun load() {
+        try {
+            synchronized(this) {
+                val packages = packageManager.getInstalledPackages(0)
+                    .filter { it.packageName != BuildConfig.APPLICATION_ID }
+                updateTimes.clear()
+                packages.associateTo(updateTimes) { it.packageName to it.lastUpdateTime }
+                stamp = updateTimes.entries.fold(0L) { sum, (packageName, updateTime) ->
+                    sum + stampOf(packageName, updateTime)
+                }
+                index = readFromFile() ?: build(packages.map { it.packageName }).also { save(it) }
+            }
+            applyPendingChanges()
+        } finally {
+            loading.set(false)
+        }
+    }
+
+    /**
+     * @return the saved index, or null if there is none or the packages changed since it was saved.
+     */
+    private fun readFromFile(): HostIndex? {
+        if (!file.exists()) return null
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                val valid = input.readInt() == STORE_VERSION && input.readLong() == stamp
+                if (valid) HostIndex.readFrom(input) else null
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Couldn't read the host index")
+            null
+        }
+    }
+
+    private fun build(packageNames: List<String>): HostIndex {
+        val filters = packageNames.associate { it to manifestParser.filtersOf(it) }
+        val index = HostIndex.of(
+            filters.values.flatMap { it.hostFilters },
+            filters.filterValues { it.isBrowser }.keys
+        )
+        Timber.d("Built host index of %d filters", index.size)
+        return index
+    }
+
+    /**
+     * Applies the changes which arrived so far at once, and saves the index once for all of them.
+     * Changes which arrive before the index is loaded or built are applied once it is.
+     */
+    private fun applyPendingChanges() = synchronized(this) {
+        val changes = synchronized(pendingChanges) { ArrayList(pendingChanges.values) }
+        val current = index
+        if (current != null && changes.isNotEmpty()) {
+            val updated = changes.fold(current) { updating, change -> updating.apply(change) }
+            index = updated
+            synchronized(pendingChanges) {
+                changes.forEach { if (pendingChanges[it.packageName] === it) pendingChanges.remove(it.packageName) }
+            }
+            save(updated)
+        }
+    }
+
+    /**
+     * The package is read again whatever the type of the [change], since a package which is replaced
+     * may be removed and added again before its changes are applied.
+     */
+    private fun HostIndex.apply(change: PackageChange): HostIndex {
+        val packageName = change.packageName
+        if (packageName == BuildConfig.APPLICATION_ID) return this
+        updateTimes.remove(packageName)?.let { stamp -= stampOf(packageName, it) }
+        val updateTime = lastUpdateTimeOf(packageName)
+        if (updateTime != null) {
+            updateTimes[packageName] = updateTime
+            stamp += stampOf(packageName, updateTime)
+        }
+        return updated(packageName, updateTime?.let { manifestParser.filtersOf(packageName) })
+    }
+
+    private fun lastUpdateTimeOf(packageName: String) = try {
+        packageManager.getPackageInfo(packageName, 0).lastUpdateTime
+    } catch (e: PackageManager.NameNotFoundException) {
+        null
+    }
+
+    private fun save(index: HostIndex) {
+        val temp = File(file.parentFile, "$FILE_NAME.tmp")
+        try {
+            DataOutputStream(temp.outputStream().buffered()).use {
+                it.writeInt(STORE_VERSION)
+                it.writeLong(stamp)
+                index.writeTo(it)
+            }
+            if (!temp.renameTo(file)) throw IOException("Couldn't rename $temp")
+        } catch (e: IOException) {
+            Timber.e(e, "Couldn't write the host index")
+            temp.delete()
+        }
+    }
+
+    private fun stampOf(packageName: String, updateTime: Long) = packageName.hashCode() * STAMP_PRIME + updateTime
+
+    companion object {
+        private const val FILE_NAME = "host_index.bin"
+        private const val STORE_VERSION = 3
+        private const val STAMP_PRIME = 31L
+    }
+}
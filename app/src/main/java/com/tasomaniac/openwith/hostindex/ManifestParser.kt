@@ -0,0 +1,245 @@
+package com.tasomaniac.openwith.hostindex
+
+import android.content.ComponentName
+import android.content.Intent
+import android.content.pm.PackageManager
+import android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_DEFAULT
+import android.content.pm.PackageManager.COMPONENT_ENABLED_STATE_ENABLED
+import android.content.res.AssetManager
+import android.content.res.Resources
+import android.content.res.XmlResourceParser
+import androidx.annotation.VisibleForTesting
+import org.xmlpull.v1.XmlPullParser
+import org.xmlpull.v1.XmlPullParserException
+import timber.log.Timber
+import java.io.IOException
+import javax.inject.Inject
+
+/**
+ * Reads the http filters of the activities of a package from its compiled manifests,
+ * the base one and those of its split APKs.
+ *
+ * The [PackageManager] doesn't give out the intent filters of other apps, it only matches intents against them.
+ */
+class ManifestParser @Inject constructor(private val packageManager: PackageManager) {
+
+    fun filtersOf(packageName: String): PackageFilters = try {
+        readManifests(packageManager.getResourcesForApplication(packageName), packageName)
+    } catch (e: PackageManager.NameNotFoundException) {
+        PackageFilters.NONE
+    } catch (e: IOException) {
+        Timber.w(e, "Couldn't open the manifest of %s", packageName)
+        PackageFilters.NONE
+    } catch (e: XmlPullParserException) {
+        Timber.w(e, "Couldn't parse the manifest of %s", packageName)
+        PackageFilters.NONE
+    }
+
+    /**
+     * The assets of an app contain a manifest for the base APK and each of its splits, all declaring
+     * the package name of the app. They may also contain overlays and shared libraries, which declare their own.
+     */
+    private fun readManifests(resources: Resources, packageName: String): PackageFilters {
+        var filters = PackageFilters.NONE
+        for (cookie in 1..MAX_ASSET_COOKIE) {
+            val parser = openManifest(resources.assets, cookie) ?: break
+            try {
+                if (parser.moveToRoot() && parser.getAttributeValue(null, "package") == packageName) {
+                    val attributes = ResourceAttributes(parser, resources)
+                    filters += Reader(packageName, parser, attributes, ::enabledSettingOf).read()
+                }
+            } finally {
+                parser.close()
+            }
+        }
+        return filters
+    }
+
+    /**
+     * @return the manifest of the asset path with the [cookie], or null if there is no such path.
+     */
+    private fun openManifest(assets: AssetManager, cookie: Int) = try {
+        assets.openXmlResourceParser(cookie, MANIFEST)
+    } catch (e: IOException) {
+        null
+    }
+
+    private fun XmlResourceParser.moveToRoot(): Boolean {
+        var event = next()
+        while (event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT) {
+            event = next()
+        }
+        return event == XmlPullParser.START_TAG
+    }
+
+    private fun enabledSettingOf(component: String): Boolean? {
+        val setting = try {
+            packageManager.getComponentEnabledSetting(ComponentName.unflattenFromString(component))
+        } catch (e: IllegalArgumentException) {
+            COMPONENT_ENABLED_STATE_DEFAULT
+        }
+        return when (setting) {
+            COMPONENT_ENABLED_STATE_DEFAULT -> null
+            COMPONENT_ENABLED_STATE_ENABLED -> true
+            else -> false
+        }
+    }
+
+    /**
+     * Values of the attributes of the android namespace at the current tag.
+     */
+    @VisibleForTesting
+    internal interface Attributes {
+
+        fun string(name: String): String?
+
+        fun boolean(name: String, default: Boolean): Boolean
+    }
+
+    /**
+     * Resolves the attributes which reference resources of the app.
+     */
+    private class ResourceAttributes(
+        private val parser: XmlResourceParser,
+        private val resources: Resources
+    ) : Attributes {
+
+        override fun string(name: String): String? {
+            val resource = parser.getAttributeResourceValue(ANDROID_NAMESPACE, name, 0)
+            if (resource == 0) return parser.getAttributeValue(ANDROID_NAMESPACE, name)
+            return try {
+                resources.getString(resource)
+            } catch (e: Resources.NotFoundException) {
+                null
+            }
+        }
+
+        override fun boolean(name: String, default: Boolean): Boolean {
+            val resource = parser.getAttributeResourceValue(ANDROID_NAMESPACE, name, 0)
+            if (resource == 0) return parser.getAttributeBooleanValue(ANDROID_NAMESPACE, name, default)
+            return try {
+                resources.getBoolean(resource)
+            } catch (e: Resources.NotFoundException) {
+                default
+            }
+        }
+    }
+
+    /**
+     * @param enabledSettingOf whether a component is enabled or disabled at runtime, or null if it is not.
+     */
+    @VisibleForTesting
+    internal class Reader(
+        private val packageName: String,
+        private val parser: XmlPullParser,
+        private val attributes: Attributes,
+        private val enabledSettingOf: (component: String) -> Boolean?
+    ) {
+
+        private val hostFilters = ArrayList<HostFilter>()
+        private var isBrowser = false
+
+        private var component: String? = null
+        private var filter: Filter? = null
+
+        fun read(): PackageFilters {
+            var event = parser.eventType
+            while (event != XmlPullParser.END_DOCUMENT) {
+                when (event) {
+                    XmlPullParser.START_TAG -> startTag(parser.name)
+                    XmlPullParser.END_TAG -> endTag(parser.name)
+                }
+                event = parser.next()
+            }
+            return PackageFilters(hostFilters, isBrowser)
+        }
+
+        private fun startTag(name: String) {
+            val filter = filter
+            when (name) {
+                "activity", "activity-alias" -> component = attributes.string("name")
+                    ?.let { "$packageName/${className(it)}" }
+                    ?.takeIf { enabledSettingOf(it) ?: attributes.boolean("enabled", true) }
+                "intent-filter" -> this.filter = component?.let { Filter() }
+                "action" -> filter?.apply { view = view || attributes.string("name") == Intent.ACTION_VIEW }
+                "category" -> filter?.apply {
+                    browsable = browsable || attributes.string("name") == Intent.CATEGORY_BROWSABLE
+                }
+                "data" -> filter?.let(::readData)
+            }
+        }
+
+        private fun readData(filter: Filter) {
+            attributes.string("scheme")?.let { filter.http = filter.http || it == "http" || it == "https" }
+            attributes.string("mimeType")?.let { filter.typed = true }
+            attributes.string("host")?.let { filter.hosts.add(it) }
+            attributes.string("path")?.let { filter.paths.add(PathPrefix(it, exact = false)) }
+            attributes.string("pathPrefix")?.let { filter.paths.add(PathPrefix(it, exact = true)) }
+            attributes.string("pathPattern")?.let { filter.paths.add(PathPrefix(literalPrefixOf(it), exact = false)) }
+        }
+
+        private fun endTag(name: String) {
+            when (name) {
+                "activity", "activity-alias" -> component = null
+                "intent-filter" -> {
+                    filter?.let { addFilter(component!!, it) }
+                    filter = null
+                }
+            }
+        }
+
+        /**
+         * Links are resolved without a category or type, so filters without the browsable category match them too,
+         * and those with a type don't. Browsable filters for any host make the package a browser.
+         *
+         * The hosts and paths of the data tags of a filter are matched in every combination.
+         */
+        private fun addFilter(component: String, filter: Filter) {
+            if (!filter.view || !filter.http || filter.typed) return
+            if (filter.hosts.isEmpty() || ANY_HOST in filter.hosts) {
+                if (filter.browsable) isBrowser = true else hostFilters.add(HostFilter(ANY_HOST, "", component))
+                return
+            }
+            val paths = if (filter.paths.isEmpty()) listOf(PathPrefix("", exact = true)) else filter.paths
+            filter.hosts.forEach { host ->
+                paths.forEach { hostFilters.add(HostFilter(host, it.prefix, component, it.exact)) }
+            }
+        }
+
+        private fun className(name: String) = when {
+            name.startsWith(".") -> packageName + name
+            '.' !in name -> "$packageName.$name"
+            else -> name
+        }
+    }
+
+    private class Filter {
+        var view = false
+        var browsable = false
+        var http = false
+        var typed = false
+        val hosts = ArrayList<String>()
+        val paths = ArrayList<PathPrefix>()
+    }
+
+    /**
+     * @param exact false for a `path` or `pathPattern`, which only match some of the paths with their prefix.
+     */
+    private data class PathPrefix(val prefix: String, val exact: Boolean)
+
+    companion object {
+        private const val MANIFEST = "AndroidManifest.xml"
+        private const val ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android"
+        private const val ANY_HOST = "*"
+        private const val MAX_ASSET_COOKIE = 16
+
+        /**
+         * Paths matching a pattern start with the part of it before any wildcard.
+         */
+        @VisibleForTesting
+        internal fun literalPrefixOf(pattern: String): String {
+            val end = pattern.indexOfFirst { it == '.' || it == '*' || it == '\\' }
+            return if (end < 0) pattern else pattern.substring(0, end)
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.tasomaniac.openwith.hostindex
+
+/**
+ * The http filters declared by the activities of a package.
+ *
+ * @param hostFilters filters for specific hosts.
+ * @param isBrowser whether an activity of the package handles http links of any host.
+ */
+data class PackageFilters(
+    val hostFilters: List<HostFilter>,
+    val isBrowser: Boolean
+) {
+
+    /**
+     * The filters of both, e.g. of the base and a split APK of the package.
+     */
+    operator fun plus(other: PackageFilters) =
+        PackageFilters(hostFilters + other.hostFilters, isBrowser || other.isBrowser)
+
+    companion object {
+        @JvmField val NONE = PackageFilters(emptyList(), false)
+    }
+}
+
+/**
+ * An http filter of [component] for links to [host] with paths starting with [pathPrefix].
+ *
+ * @param host may start with `*.` to match all subdomains, or be `*` to match any host.
+ * @param component flattened name of the component.
+ * @param exact whether the filter matches all the paths starting with [pathPrefix], or only some of them.
+ */
+data class HostFilter(
+    val host: String,
+    val pathPrefix: String,
+    val component: String,
+    val exact: Boolean = true
+)
@@ -1,42 +1,39 @@
 package com.tasomaniac.openwith.redirect
 
 import android.content.Intent
-import android.content.pm.PackageManager
-import android.content.pm.ResolveInfo
-import android.os.Build.VERSION.SDK_INT
-import android.os.Build.VERSION_CODES.M
-import com.tasomaniac.openwith.BuildConfig
-import com.tasomaniac.openwith.browser.resolver.BrowserResolver
+import com.tasomaniac.openwith.browser.resolver.BrowserRegistry
+import com.tasomaniac.openwith.hostindex.HostIndexStore
+import com.tasomaniac.openwith.resolver.ResolutionContext
 import com.tasomaniac.openwith.util.Intents
 import com.tasomaniac.openwith.util.componentName
 import javax.inject.Inject
 
 class BrowserIntentChecker @Inject constructor(
-    private val packageManager: PackageManager,
-    private val browserResolver: BrowserResolver
+    private val hostIndexStore: HostIndexStore,
+    private val browserRegistry: BrowserRegistry
 ) {
 
-    fun hasOnlyBrowsers(sourceIntent: Intent): Boolean {
+    /**
+     * Looks the link up in the [HostIndexStore] first. The index has every http filter of the base and split
+     * manifests of the installed packages, so when it finds only browsers no other app handles the link.
+     * It matches paths only by their literal prefix though, so a `path` or `pathPattern` filter it finds
+     * may not match the link. When it finds a handler other than a browser, or isn't ready yet,
+     * the handlers are queried.
+     *
+     * @param context keeps what is queried, so that the chooser of the link doesn't need to query it again.
+     */
+    fun hasOnlyBrowsers(sourceIntent: Intent, context: ResolutionContext): Boolean {
         if (!Intents.isHttp(sourceIntent)) {
             return false
         }
-        val resolved = resolveSource(sourceIntent).toComponents()
-        val browsers = browserResolver.queryBrowsers().toComponents()
-
-        return (resolved - browsers).isEmpty()
+        val uri = sourceIntent.data!!
+        return hostIndexStore.index()?.hasOnlyBrowsers(uri.host.orEmpty(), uri.path.orEmpty()) == true ||
+            queryOnlyBrowsers(sourceIntent, context)
     }
 
-    private fun resolveSource(sourceIntent: Intent): List<ResolveInfo> {
-        val flag = if (SDK_INT >= M) PackageManager.MATCH_ALL else PackageManager.MATCH_DEFAULT_ONLY
-        val resolved = packageManager.queryIntentActivities(sourceIntent, flag)
-
-        resolved.removeAll {
-            it.activityInfo.packageName == BuildConfig.APPLICATION_ID
-        }
-        return resolved.distinctBy {
-            it.activityInfo.packageName
-        }
+    private fun queryOnlyBrowsers(sourceIntent: Intent, context: ResolutionContext): Boolean {
+        return context.resolveList(sourceIntent)
+            .distinctBy { it.activityInfo.packageName }
+            .all { browserRegistry.isBrowser(it.activityInfo.componentName()) }
     }
-
-    private fun List<ResolveInfo>.toComponents() = map { it.activityInfo.componentName() }
 }
@@ -0,0 +1,78 @@
+package com.tasomaniac.openwith.redirect
+
+import android.content.Intent
+import android.net.Uri
+import com.tasomaniac.openwith.resolver.IntentShape
+import com.tasomaniac.openwith.resolver.ResolutionContext
+import com.tasomaniac.openwith.rx.SchedulingStrategy
+import io.reactivex.Observable
+import io.reactivex.Single
+import okhttp3.HttpUrl
+import javax.inject.Inject
+
+/**
+ * Fixes the redirects of links shared together, so that they can be chosen for one after the other.
+ */
+class LinkBatchFixer(
+    private val browserIntentChecker: BrowserIntentChecker,
+    private val redirectFixer: RedirectFixer,
+    private val schedulingStrategy: SchedulingStrategy,
+    private val copy: (source: Intent, url: HttpUrl?) -> Intent
+) {
+
+    @Inject constructor(
+        browserIntentChecker: BrowserIntentChecker,
+        redirectFixer: RedirectFixer,
+        schedulingStrategy: SchedulingStrategy
+    ) : this(browserIntentChecker, redirectFixer, schedulingStrategy, { source, url ->
+        Intent(source).apply { if (url != null) data = Uri.parse(url.toString()) }
+    })
+
+    /**
+     * Each link is checked on its own, since links of the same host may match different path filters.
+     * The links which only browsers handle are redirected in parallel, at most [MAX_PARALLEL_REDIRECTS]
+     * at a time, and keep their order.
+     *
+     * @param context shared by the links of the batch, so that each kind of link and the browsers
+     * are queried once for all of them.
+     */
+    fun fix(sources: List<Intent>, context: ResolutionContext): Single<List<Intent>> =
+        Single.fromCallable { sources.map { hasOnlyBrowsers(it, context) } }
+            .compose(schedulingStrategy.forSingle())
+            .flatMap { onlyBrowsers ->
+                Observable.fromIterable(sources.indices)
+                    .concatMapEager(
+                        { redirect(sources[it], onlyBrowsers[it]).toObservable() },
+                        MAX_PARALLEL_REDIRECTS,
+                        1
+                    )
+                    .toList()
+            }
+            .doOnSuccess { prefetchResolveLists(it, context) }
+
+    private fun hasOnlyBrowsers(source: Intent, context: ResolutionContext) =
+        source.httpUrl() != null && browserIntentChecker.hasOnlyBrowsers(source, context)
+
+    private fun redirect(source: Intent, hasOnlyBrowsers: Boolean): Single<Intent> {
+        val url = source.httpUrl()
+        if (url == null || !hasOnlyBrowsers) {
+            return Single.just(source)
+        }
+        return redirectFixer.followRedirects(url)
+            .map { copy(source, it) }
+    }
+
+    /**
+     * Resolves the handlers of each distinct kind of link while the chooser of the first link is starting.
+     */
+    private fun prefetchResolveLists(intents: List<Intent>, context: ResolutionContext) {
+        val targets = intents.distinctBy { IntentShape.from(it) }.map { copy(it, null) }
+        schedulingStrategy.runOnExecutor { targets.forEach { context.resolveList(it) } }
+    }
+
+    private fun Intent.httpUrl() = dataString?.let { HttpUrl.parse(it) }
+
+    companion object {
+        const val MAX_PARALLEL_REDIRECTS = 4
+    }
+}
@@ -0,0 +1,102 @@
+package com.tasomaniac.openwith.redirect
+
+import com.tasomaniac.openwith.data.Redirect
+import com.tasomaniac.openwith.data.RedirectDao
+import okhttp3.HttpUrl
+import okhttp3.Response
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.HOURS
+import java.util.concurrent.TimeUnit.SECONDS
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Remembers where shortened links end up so that sharing the same link again
+ * doesn't need to go through the network.
+ *
+ * Every hop of a chain is stored with the final url, so a link entering the chain
+ * midway is resolved from the cache too.
+ *
+ * Expired redirects are never returned, and are deleted at most once a day.
+ */
+@Singleton
+class RedirectCache(
+    private val dao: RedirectDao,
+    private val clock: () -> Long
+) {
+
+    @Inject
+    constructor(dao: RedirectDao) : this(dao, System::currentTimeMillis)
+
+    private val nextCleanupAt = AtomicLong()
+
+    /**
+     * @return the hop from the [url] directly to its final url if it is known and not expired yet.
+     */
+    fun get(url: HttpUrl): RedirectHop? {
+        val redirect = dao.redirectOf(url.toString()) ?: return null
+        val target = HttpUrl.parse(redirect.target)
+        return if (target != null && redirect.expiresAt > clock()) {
+            RedirectHop(url, target, redirect.expiresAt)
+        } else {
+            null
+        }
+    }
+
+    /**
+     * Stores the [target] for every hop. A hop is only valid as long as the hops after it are valid.
+     *
+     * @param targetExpiresAt when the knowledge of the [target] itself expires,
+     * i.e. when it is resolved from the cache midway.
+     */
+    fun put(hops: List<RedirectHop>, target: HttpUrl, targetExpiresAt: Long = Long.MAX_VALUE) {
+        val now = clock()
+        var expiresAt = targetExpiresAt
+        val redirects = hops.asReversed().mapNotNull { hop ->
+            expiresAt = minOf(expiresAt, hop.expiresAt)
+            if (expiresAt > now) Redirect(hop.url.toString(), target.toString(), expiresAt) else null
+        }
+        deleteExpiredOncePerDay(now)
+        if (redirects.isNotEmpty()) {
+            dao.insert(redirects)
+        }
+    }
+
+    private fun deleteExpiredOncePerDay(now: Long) {
+        val cleanupAt = nextCleanupAt.get()
+        if (now >= cleanupAt && nextCleanupAt.compareAndSet(cleanupAt, now + CLEANUP_INTERVAL)) {
+            dao.deleteExpired(now)
+        }
+    }
+
+    /**
+     * Expiry of a redirect [response] from its Cache-Control or Expires headers.
+     * Falls back to a default depending on whether the redirect is permanent.
+     */
+    fun expiryOf(response: Response): Long {
+        val now = clock()
+        val cacheControl = response.cacheControl()
+        val expires = response.headers().getDate("Expires")
+        val date = response.headers().getDate("Date")?.time ?: now
+        return when {
+            cacheControl.noStore() || cacheControl.noCache() -> now
+            cacheControl.maxAgeSeconds() >= 0 -> now + SECONDS.toMillis(cacheControl.maxAgeSeconds().toLong())
+            expires != null -> now + expires.time - date
+            response.code() in PERMANENT_REDIRECTS -> now + DEFAULT_PERMANENT_TTL
+            else -> now + DEFAULT_TEMPORARY_TTL
+        }
+    }
+
+    companion object {
+        private val PERMANENT_REDIRECTS = setOf(301, 308)
+        private val DEFAULT_PERMANENT_TTL = DAYS.toMillis(30)
+        private val DEFAULT_TEMPORARY_TTL = HOURS.toMillis(1)
+        private val CLEANUP_INTERVAL = DAYS.toMillis(1)
+    }
+}
+
+/**
+ * The [url] redirecting to the [target] until [expiresAt].
+ */
+data class RedirectHop(val url: HttpUrl, val target: HttpUrl, val expiresAt: Long)
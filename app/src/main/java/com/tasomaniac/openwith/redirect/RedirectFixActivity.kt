@@ -7,13 +7,16 @@ import android.net.Uri
 import android.os.Bundle
 import com.tasomaniac.android.widget.DelayedProgressBar
 import com.tasomaniac.openwith.R
+import com.tasomaniac.openwith.resolver.ResolutionContext
+import com.tasomaniac.openwith.resolver.ResolutionContextStore
 import com.tasomaniac.openwith.resolver.ResolverActivity
 import com.tasomaniac.openwith.rx.SchedulingStrategy
 import com.tasomaniac.openwith.util.Urls.fixUrls
 import dagger.android.support.DaggerAppCompatActivity
-import io.reactivex.MaybeTransformer
+import io.reactivex.Maybe
 import io.reactivex.Single
-import io.reactivex.disposables.Disposable
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.rxkotlin.addTo
 import okhttp3.HttpUrl
 import javax.inject.Inject
 
@@ -22,8 +25,10 @@ class RedirectFixActivity : DaggerAppCompatActivity() {
     @Inject lateinit var browserIntentChecker: BrowserIntentChecker
     @Inject lateinit var redirectFixer: RedirectFixer
     @Inject lateinit var schedulingStrategy: SchedulingStrategy
+    @Inject lateinit var resolutionContexts: ResolutionContextStore
+    @Inject lateinit var linkBatchFixer: LinkBatchFixer
 
-    private var disposable: Disposable? = null
+    private val disposables = CompositeDisposable()
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
@@ -34,43 +39,88 @@ class RedirectFixActivity : DaggerAppCompatActivity() {
 
         val source = Intent(intent).apply {
             component = null
+            removeExtra(EXTRA_BATCH_URLS)
         }
-        disposable = Single.just(source)
-            .filter { browserIntentChecker.hasOnlyBrowsers(it) }
-            .compose(redirectTransformer)
+        val context = resolutionContexts.create()
+        ResolutionContextStore.attach(source, context)
+        val batchUrls = intent.getStringArrayListExtra(EXTRA_BATCH_URLS)
+        if (batchUrls != null) {
+            fixBatch(source, batchUrls, context)
+            return
+        }
+        Single.fromCallable { browserIntentChecker.hasOnlyBrowsers(source, context) }
+            .compose(schedulingStrategy.forSingle())
+            .flatMapMaybe { hasOnlyBrowsers -> if (hasOnlyBrowsers) followRedirects(source) else Maybe.empty() }
             .map { source.withUrl(it) }
+            .doOnSuccess { prefetchResolveList(it, context) }
             .defaultIfEmpty(source)
-            .compose(schedulingStrategy.forMaybe())
-            .subscribe { intent ->
-                intent.component = ComponentName(this, ResolverActivity::class.java)
-                startActivity(intent)
-                finish()
-            }
+            .subscribe { intent -> startResolver(intent) }
+            .addTo(disposables)
+    }
+
+    /**
+     * Starts the chooser of the first link once every link is fixed. The rest are chosen for after it.
+     * All of them carry the same [context], since it keeps what is resolved per kind of link.
+     */
+    private fun fixBatch(source: Intent, urls: List<String>, context: ResolutionContext) {
+        val sources = urls.map { Intent(source).setData(Uri.parse(it)) }
+        linkBatchFixer.fix(sources, context)
+            .subscribe { intents -> startResolver(intents.first(), intents.drop(1)) }
+            .addTo(disposables)
+    }
+
+    private fun startResolver(intent: Intent, pendingLinks: List<Intent> = emptyList()) {
+        intent.component = ComponentName(this, ResolverActivity::class.java)
+        if (pendingLinks.isNotEmpty()) {
+            intent.putParcelableArrayListExtra(ResolverActivity.EXTRA_PENDING_LINKS, ArrayList(pendingLinks))
+        }
+        startActivity(intent)
+        finish()
     }
 
-    private val redirectTransformer = MaybeTransformer<Intent, HttpUrl> { source ->
-        source
-            .map { it.toHttpUrl() }
-            .flatMap { httpUrl ->
-                redirectFixer
-                    .followRedirects(httpUrl)
-                    .toMaybe()
-            }
+    /**
+     * Only links which no other app handles are requested, so that the url isn't sent to its server,
+     * and a one time link isn't used up, when an app would open it anyway.
+     */
+    private fun followRedirects(source: Intent): Maybe<HttpUrl> {
+        val httpUrl = source.toHttpUrl() ?: return Maybe.empty()
+        return redirectFixer.followRedirects(httpUrl).toMaybe()
+    }
+
+    /**
+     * Resolves the handlers of the final url while the chooser is starting.
+     * Links which are redirected within the same kind of url are already resolved by [browserIntentChecker].
+     */
+    private fun prefetchResolveList(intent: Intent, context: ResolutionContext) {
+        val target = Intent(intent)
+        schedulingStrategy.runOnExecutor { context.resolveList(target) }
     }
 
     override fun onDestroy() {
-        disposable?.dispose()
+        disposables.dispose()
         super.onDestroy()
     }
 
     companion object {
 
+        private const val EXTRA_BATCH_URLS = "EXTRA_BATCH_URLS"
+
         @JvmStatic
         fun createIntent(activity: Activity, foundUrl: String): Intent {
             return Intent(activity, RedirectFixActivity::class.java)
                 .putExtras(activity.intent)
                 .setAction(Intent.ACTION_VIEW)
-                .setData(Uri.parse(fixUrls(foundUrl)))
+                .setData(Uri.parse(fixUrls(activity, foundUrl)))
+        }
+
+        /**
+         * Handles all of the [foundUrls] in one go, one chooser after the other.
+         */
+        @JvmStatic
+        fun createIntent(activity: Activity, foundUrls: List<String>): Intent {
+            val fixedUrls = foundUrls.mapTo(ArrayList<String>()) { fixUrls(activity, it) }
+            return createIntent(activity, foundUrls.first())
+                .putStringArrayListExtra(EXTRA_BATCH_URLS, fixedUrls)
         }
 
         private fun Intent.withUrl(url: HttpUrl) = setData(Uri.parse(url.toString()))
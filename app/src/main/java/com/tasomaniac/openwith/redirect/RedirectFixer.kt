@@ -1,24 +1,45 @@
 package com.tasomaniac.openwith.redirect
 
+import com.tasomaniac.openwith.redirect.RedirectReport.Termination
 import com.tasomaniac.openwith.rx.SchedulingStrategy
 import io.reactivex.Single
 import okhttp3.Call
+import okhttp3.Headers
 import okhttp3.HttpUrl
 import okhttp3.OkHttpClient
 import okhttp3.Request
+import okhttp3.Response
+import timber.log.Timber
 import java.io.IOException
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeoutException
 import java.util.concurrent.TimeUnit.SECONDS
 import javax.inject.Inject
 
+/**
+ * Follows the redirects of a url without following them in the HTTP client, so that every hop
+ * can be looked up from and stored in the [RedirectCache].
+ *
+ * Hops are requested with HEAD so that no body is downloaded. Servers rejecting HEAD are asked with GET instead.
+ */
 class RedirectFixer(
     client: OkHttpClient,
+    private val redirectCache: RedirectCache,
     private val scheduling: SchedulingStrategy,
-    private val timeoutInSec: Int
+    private val timeoutInSec: Int,
+    private val maxHops: Int = DEFAULT_MAX_HOPS
 ) {
 
     @Inject
-    constructor(client: OkHttpClient, scheduling: SchedulingStrategy) : this(client, scheduling, DEFAULT_TIMEOUT_IN_SEC)
+    constructor(
+        client: OkHttpClient,
+        redirectCache: RedirectCache,
+        scheduling: SchedulingStrategy
+    ) : this(client, redirectCache, scheduling, DEFAULT_TIMEOUT_IN_SEC)
 
+    /**
+     * Shares the connection pool of the app client, so hops to the same host reuse the connection.
+     */
     private val client = client.newBuilder()
         .connectTimeout(2, SECONDS)
         .readTimeout(2, SECONDS)
@@ -27,41 +48,140 @@ class RedirectFixer(
         .followSslRedirects(false)
         .build()
 
-    private var call: Call? = null
-    @Volatile private var lastUrl: HttpUrl? = null
+    fun followRedirects(url: HttpUrl): Single<HttpUrl> =
+        followRedirectsWithReport(url).map { it.finalUrl }
 
-    fun followRedirects(url: HttpUrl): Single<HttpUrl> {
-        this.lastUrl = url
+    fun followRedirectsWithReport(url: HttpUrl): Single<RedirectReport> {
+        val trace = Trace(url)
         return Single
-            .fromCallable { doFollowRedirects(url) }
+            .fromCallable { doFollowRedirects(trace) }
             .timeout(timeoutInSec.toLong(), SECONDS)
-            .doOnError { call?.cancel() }
-            .onErrorReturn { lastUrl }
-            .doOnDispose { call?.cancel() }
+            .doOnError { trace.call?.cancel() }
+            .onErrorReturn { trace.report(terminationOf(it)) }
+            .doOnDispose { trace.call?.cancel() }
+            .doOnSuccess { Timber.d("Followed redirects: %s", it) }
             .compose(scheduling.forSingle())
     }
 
-    private fun doFollowRedirects(url: HttpUrl): HttpUrl =
-        fetchLocationHeader(url)
-            ?.let { HttpUrl.parse(it) }
-            ?.let {
-                lastUrl = it
-                doFollowRedirects(it)
-            } ?: url
-
-    private fun fetchLocationHeader(url: HttpUrl): String? {
-        val call = client.newCall(request(url))
-        this.call = call
-        return try {
-            call.execute().use { it.header("Location") }
+    private fun terminationOf(error: Throwable) = if (error is TimeoutException) {
+        Termination.TIMEOUT
+    } else {
+        Timber.e(error, "Couldn't follow redirects")
+        Termination.ERROR
+    }
+
+    /**
+     * Follows the redirects hop by hop until the final url, or a url with a known final url, is reached.
+     * The chain is only cached when it is followed until a successful response.
+     */
+    private fun doFollowRedirects(trace: Trace): RedirectReport {
+        val termination = try {
+            followHops(trace)
         } catch (e: IOException) {
-            null
+            Timber.d(e, "Stopped following redirects at %s", trace.lastUrl)
+            Termination.NETWORK_ERROR
+        }
+        return trace.report(termination)
+    }
+
+    private fun followHops(trace: Trace): Termination {
+        val hops = ArrayList<RedirectHop>()
+        while (hops.size < maxHops) {
+            followHop(trace, hops)?.let { return it }
         }
+        return Termination.MAX_HOPS
     }
 
-    private fun request(httpUrl: HttpUrl) = Request.Builder().url(httpUrl).build()
+    /**
+     * @return why following should stop, or null to follow the next hop.
+     */
+    private fun followHop(trace: Trace, hops: MutableList<RedirectHop>): Termination? {
+        val current = trace.lastUrl
+        val cached = redirectCache.get(current)
+        return if (cached != null) {
+            redirectCache.put(hops, cached.target, cached.expiresAt)
+            trace.lastUrl = cached.target
+            Termination.CACHE_HIT
+        } else {
+            fetchHop(current, trace, hops)
+        }
+    }
+
+    /**
+     * A response which is neither a redirect nor successful may only be a temporary failure,
+     * so the chain which led to it isn't cached.
+     */
+    private fun fetchHop(url: HttpUrl, trace: Trace, hops: MutableList<RedirectHop>): Termination? =
+        fetch(url, trace).use { response ->
+            val target = if (response.isRedirect) response.header("Location")?.let { url.resolve(it) } else null
+            when {
+                target != null -> {
+                    hops.add(RedirectHop(url, target, redirectCache.expiryOf(response)))
+                    trace.lastUrl = target
+                    null
+                }
+                response.isSuccessful -> {
+                    redirectCache.put(hops, url)
+                    Termination.FINAL_URL
+                }
+                else -> Termination.HTTP_ERROR
+            }
+        }
+
+    private fun fetch(url: HttpUrl, trace: Trace): Response {
+        val response = execute(request(url).head().build(), trace)
+        if (response.code() !in HEAD_REJECTED) {
+            return response
+        }
+        response.close()
+        return execute(request(url).get().build(), trace)
+    }
+
+    private fun execute(request: Request, trace: Trace): Response {
+        val call = client.newCall(request)
+        trace.call = call
+        val response = call.execute()
+        trace.hops.add(
+            RedirectReport.Hop(
+                url = request.url(),
+                method = request.method(),
+                code = response.code(),
+                latencyMillis = response.receivedResponseAtMillis() - response.sentRequestAtMillis(),
+                estimatedBytes = response.headers().encodedSize() + response.bodySize()
+            )
+        )
+        return response
+    }
+
+    private fun request(httpUrl: HttpUrl) = Request.Builder().url(httpUrl)
+
+    private fun Headers.encodedSize() = (0 until size()).fold(0L) { total, index ->
+        total + name(index).length + value(index).length + HEADER_SEPARATOR_LENGTH
+    }
+
+    /**
+     * The body is not read, but it is drained when the response is closed to reuse the connection.
+     * Only its declared length is known, so a chunked body counts as empty.
+     */
+    private fun Response.bodySize() =
+        if (request().method() == "HEAD") 0L else body()?.contentLength()?.coerceAtLeast(0) ?: 0L
+
+    /**
+     * State of a single [followRedirectsWithReport], shared with the timeout handling.
+     */
+    private class Trace(val url: HttpUrl) {
+        @Volatile var call: Call? = null
+        @Volatile var lastUrl: HttpUrl = url
+        val hops: MutableList<RedirectReport.Hop> = CopyOnWriteArrayList()
+
+        fun report(termination: Termination) =
+            RedirectReport(url, lastUrl, hops.toList(), termination)
+    }
 
     companion object {
         private const val DEFAULT_TIMEOUT_IN_SEC = 5
+        private const val DEFAULT_MAX_HOPS = 10
+        private const val HEADER_SEPARATOR_LENGTH = 4
+        private val HEAD_REJECTED = setOf(405, 501)
     }
 }
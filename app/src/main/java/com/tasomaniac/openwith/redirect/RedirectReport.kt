@@ -0,0 +1,54 @@
+package com.tasomaniac.openwith.redirect
+
+import okhttp3.HttpUrl
+
+/**
+ * What it took to follow the redirects of [url].
+ */
+data class RedirectReport(
+    val url: HttpUrl,
+    val finalUrl: HttpUrl,
+    val hops: List<Hop>,
+    val termination: Termination
+) {
+
+    val totalLatencyMillis get() = hops.fold(0L) { total, hop -> total + hop.latencyMillis }
+
+    val totalEstimatedBytes get() = hops.fold(0L) { total, hop -> total + hop.estimatedBytes }
+
+    /**
+     * A single request made while following the redirects.
+     *
+     * @param estimatedBytes of the headers and the declared length of the body, if any, which are drained
+     * from the connection. Not counted from the connection itself, so a chunked body counts as empty.
+     */
+    data class Hop(
+        val url: HttpUrl,
+        val method: String,
+        val code: Int,
+        val latencyMillis: Long,
+        val estimatedBytes: Long
+    )
+
+    enum class Termination {
+        /**
+         * Reached a url which doesn't redirect.
+         */
+        FINAL_URL,
+        /**
+         * Reached a url whose final url is known from the [RedirectCache].
+         */
+        CACHE_HIT,
+        /**
+         * Reached a url which responded with neither a redirect nor a success, e.g. a 429 or a 503.
+         */
+        HTTP_ERROR,
+        MAX_HOPS,
+        NETWORK_ERROR,
+        TIMEOUT,
+        /**
+         * Stopped by an unexpected error, e.g. of the [RedirectCache].
+         */
+        ERROR
+    }
+}
@@ -1,14 +1,10 @@
 package com.tasomaniac.openwith.resolver;
 
 import android.app.Activity;
-import android.content.pm.ResolveInfo;
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
 import androidx.core.app.ShareCompat;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class CallerPackage {
 
     @Nullable private final String callerPackage;
@@ -26,19 +22,9 @@ public class CallerPackage {
         return callerPackage;
     }
 
-    void removeFrom(List<ResolveInfo> currentResolveList) {
+    void removeFrom(ResolveListFilter filter) {
         if (!TextUtils.isEmpty(callerPackage)) {
-            removePackageFromList(callerPackage, currentResolveList);
-        }
-    }
-
-    private static void removePackageFromList(String packageName, List<ResolveInfo> list) {
-        List<ResolveInfo> remove = new ArrayList<>();
-        for (ResolveInfo info : list) {
-            if (info.activityInfo.packageName.equals(packageName)) {
-                remove.add(info);
-            }
+            filter.excludePackage(callerPackage);
         }
-        list.removeAll(remove);
     }
 }
@@ -1,82 +1,107 @@
 package com.tasomaniac.openwith.resolver;
 
+import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import com.tasomaniac.openwith.PerActivity;
+import com.tasomaniac.openwith.data.ChooserHistoryDao;
+import com.tasomaniac.openwith.data.ChooserHistoryEntry;
+import timber.log.Timber;
 
+import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * How many times each package is chosen, kept one row per package in the {@link ChooserHistoryDao}.
+ *
+ * The counts are loaded the first time they are needed, and each choice only writes the row of its package.
+ * The history which used to be kept as a single string in the preferences is moved over on the first load.
+ */
+@PerActivity
 class ChooserHistory {
 
     private static final String KEY_HISTORY = "history";
 
-    private static final char SEPARATOR_KEY_VALUE = '|';
     private static final String SEPARATOR_KEY_VALUE_ESCAPED = "\\|";
     private static final char SEPARATOR_ITEMS = '#';
 
-    private final SharedPreferences preferences;
-    private final HashMap<String, Integer> mHistoryMap = new HashMap<>();
+    private final ChooserHistoryDao dao;
+    private final SharedPreferences legacyPreferences;
+    @Nullable private Map<String, Integer> counts;
 
-    static ChooserHistory fromSettings(Context context) {
-        return fromSettings(getPreferences(context));
+    @Inject
+    ChooserHistory(ChooserHistoryDao dao, Application app) {
+        this(dao, getLegacyPreferences(app));
     }
 
     @VisibleForTesting
-    static ChooserHistory fromSettings(SharedPreferences preferences) {
-        ChooserHistory history = new ChooserHistory(preferences);
-        String saveString = preferences.getString(KEY_HISTORY, "");
-        if (saveString.isEmpty()) {
-            return history;
-        }
-
-        String[] items = saveString.split(String.valueOf(SEPARATOR_ITEMS));
-        for (String item : items) {
-            String[] split = item.split(SEPARATOR_KEY_VALUE_ESCAPED);
-            if (split.length == 2) {
-                history.mHistoryMap.put(split[0], Integer.valueOf(split[1]));
-            }
-        }
-        return history;
+    ChooserHistory(ChooserHistoryDao dao, SharedPreferences legacyPreferences) {
+        this.dao = dao;
+        this.legacyPreferences = legacyPreferences;
     }
 
-    private ChooserHistory(SharedPreferences preferences) {
-        this.preferences = preferences;
+    @WorkerThread
+    synchronized int get(String packageName) {
+        Integer count = counts().get(packageName);
+        return count != null ? count : 0;
     }
 
-    int get(String packageName) {
-        Integer count = mHistoryMap.get(packageName);
-        return count != null ? count : 0;
+    @WorkerThread
+    synchronized void add(String packageName) {
+        Integer currentCount = counts().get(packageName);
+        counts().put(packageName, currentCount != null ? currentCount + 1 : 1);
+        dao.increment(packageName);
     }
 
-    void add(String packageName) {
-        Integer currentCount = mHistoryMap.get(packageName);
-        if (currentCount == null) {
-            mHistoryMap.put(packageName, 1);
-        } else {
-            mHistoryMap.put(packageName, currentCount + 1);
+    private Map<String, Integer> counts() {
+        if (counts == null) {
+            importLegacyHistory();
+            List<ChooserHistoryEntry> entries = dao.entries();
+            counts = new HashMap<>(entries.size());
+            for (ChooserHistoryEntry entry : entries) {
+                counts.put(entry.getPackageName(), entry.getTimesChosen());
+            }
         }
+        return counts;
     }
 
-    void save() {
-        preferences.edit().putString(KEY_HISTORY, getAsSaveString()).apply();
+    private void importLegacyHistory() {
+        String saveString = legacyPreferences.getString(KEY_HISTORY, "");
+        if (saveString.isEmpty()) {
+            return;
+        }
+        dao.insert(parseLegacyHistory(saveString));
+        legacyPreferences.edit().remove(KEY_HISTORY).apply();
     }
 
-    String getAsSaveString() {
-        StringBuilder saveString = new StringBuilder();
-        for (Map.Entry<String, Integer> entry : mHistoryMap.entrySet()) {
-            saveString.append(entry.getKey());
-            saveString.append(SEPARATOR_KEY_VALUE);
-            saveString.append(entry.getValue().toString());
-            saveString.append(SEPARATOR_ITEMS);
-        }
-        if (saveString.length() > 0) {
-            saveString.deleteCharAt(saveString.length() - 1);
+    /**
+     * Entries which can't be parsed are skipped, so that they don't lose the rest of the history.
+     */
+    @VisibleForTesting
+    static List<ChooserHistoryEntry> parseLegacyHistory(String saveString) {
+        String[] items = saveString.split(String.valueOf(SEPARATOR_ITEMS));
+        List<ChooserHistoryEntry> entries = new ArrayList<>(items.length);
+        for (String item : items) {
+            String[] split = item.split(SEPARATOR_KEY_VALUE_ESCAPED);
+            if (split.length != 2) {
+                continue;
+            }
+            try {
+                entries.add(new ChooserHistoryEntry(split[0], Integer.parseInt(split[1])));
+            } catch (NumberFormatException e) {
+                Timber.w(e, "Skipping the invalid chooser history entry %s", item);
+            }
         }
-        return saveString.toString();
+        return entries;
     }
 
-    private static SharedPreferences getPreferences(Context context) {
+    private static SharedPreferences getLegacyPreferences(Context context) {
         return context.getSharedPreferences("bs_chooser", Context.MODE_PRIVATE);
     }
 }
@@ -0,0 +1,87 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.Intent
+import androidx.annotation.WorkerThread
+import com.tasomaniac.openwith.PerActivity
+import com.tasomaniac.openwith.data.ChooserScore
+import com.tasomaniac.openwith.data.ChooserScoreDao
+import java.util.Arrays
+import java.util.concurrent.TimeUnit.DAYS
+import javax.inject.Inject
+
+/**
+ * Ranks components by how often, and how lately, they are chosen for the host of the source intent.
+ *
+ * Each choice adds one to the score of a component for the host, and scores halve every [HALF_LIFE_MILLIS].
+ * What is chosen for a host lately outweighs what was chosen many times a long time ago.
+ */
+@PerActivity
+class ChooserRanking(
+    private val host: String?,
+    private val dao: ChooserScoreDao,
+    private val clock: () -> Long
+) {
+
+    @Inject constructor(
+        sourceIntent: Intent,
+        dao: ChooserScoreDao
+    ) : this(sourceIntent.data?.host, dao, System::currentTimeMillis)
+
+    @Volatile private var scores: Scores? = null
+
+    /**
+     * Called once for each candidate while sorting, so the scores of the host are loaded only the first time.
+     *
+     * @return the decayed score of the component, or 0 if it was never chosen for the host.
+     */
+    @WorkerThread
+    fun scoreOf(packageName: String, className: String): Double = scores().scoreOf("$packageName/$className")
+
+    /**
+     * @param component flattened name of the chosen component.
+     */
+    @WorkerThread
+    fun record(component: String) {
+        if (host == null) return
+        val now = clock()
+        dao.insert(ChooserScore(host, component, scores().scoreOf(component, now) + 1, now))
+        dao.deleteUsedBefore(now - FORGET_AFTER_MILLIS)
+        scores = null
+    }
+
+    private fun scores() = scores ?: Scores(host?.let(dao::scoresOf).orEmpty(), clock()).also { scores = it }
+
+    /**
+     * Scores of a host in arrays sorted by component.
+     */
+    private class Scores(entries: List<ChooserScore>, private val now: Long) {
+
+        private val components: Array<String>
+        private val scores: DoubleArray
+        private val lastUsed: LongArray
+
+        init {
+            val sorted = entries.sortedBy { it.component }
+            components = Array(sorted.size) { sorted[it].component }
+            scores = DoubleArray(sorted.size) { sorted[it].score }
+            lastUsed = LongArray(sorted.size) { sorted[it].lastUsed }
+        }
+
+        fun scoreOf(component: String, at: Long = now): Double {
+            val index = Arrays.binarySearch(components, component)
+            return if (index >= 0) decayed(scores[index], at - lastUsed[index]) else 0.0
+        }
+
+        private fun decayed(score: Double, elapsed: Long) =
+            score * Math.exp(-Math.log(2.0) * elapsed.coerceAtLeast(0) / HALF_LIFE_MILLIS)
+    }
+
+    companion object {
+        private val HALF_LIFE_MILLIS = DAYS.toMillis(30)
+
+        /**
+         * After a year, a component chosen even a thousand times scores below a single choice today.
+         */
+        private val FORGET_AFTER_MILLIS = DAYS.toMillis(365)
+    }
+}
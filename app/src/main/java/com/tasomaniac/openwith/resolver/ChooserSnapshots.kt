@@ -0,0 +1,131 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.ComponentName
+import android.content.Intent
+import android.content.pm.ActivityInfo
+import android.content.pm.ApplicationInfo
+import android.content.pm.PackageManager
+import android.content.pm.ResolveInfo
+import com.tasomaniac.openwith.data.ChooserSnapshot
+import com.tasomaniac.openwith.data.ChooserSnapshotDao
+import com.tasomaniac.openwith.hostindex.HostIndexStore
+import com.tasomaniac.openwith.rx.SchedulingStrategy
+import com.tasomaniac.openwith.util.componentName
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Persists what the chooser displayed for a kind of link so that the next time
+ * it can be displayed before the [PackageManager] is queried again.
+ *
+ * Links are grouped into kinds like in the [ResolveListCache], and only the latest [MAX_SNAPSHOTS] kinds are kept.
+ * A snapshot is dropped when packages change, or when one of its packages was updated since it was saved.
+ */
+@Singleton
+internal class ChooserSnapshots @Inject constructor(
+    private val dao: ChooserSnapshotDao,
+    private val packageManager: PackageManager,
+    private val iconLoader: IconLoader,
+    private val hostIndexStore: HostIndexStore,
+    scheduling: SchedulingStrategy,
+    packageChangeMonitor: PackageChangeMonitor
+) {
+
+    init {
+        packageChangeMonitor.changes().subscribe { change -> scheduling.runOnExecutor { invalidate(change) } }
+    }
+
+    fun read(
+        sourceIntent: Intent,
+        lastChosenComponent: ComponentName?,
+        callerPackage: CallerPackage
+    ): IntentResolverResult? {
+        val snapshot = upToDateSnapshotOf(keyOf(sourceIntent))
+            .filterNot { it.componentName.packageName == callerPackage.callerPackage }
+        if (snapshot.isEmpty()) return null
+
+        val items = snapshot.map { it.toDisplayActivityInfo() }
+        val filteredItem = items.find { it.activityInfo.componentName() == lastChosenComponent }
+        return IntentResolverResult(
+            resolved = items - listOfNotNull(filteredItem),
+            filteredItem = filteredItem,
+            showExtended = snapshot.any { it.applicationLabel != null },
+            fromSnapshot = true
+        )
+    }
+
+    /**
+     * @param sorted resolve list in the order it is displayed.
+     */
+    fun save(sourceIntent: Intent, sorted: List<ResolveInfo>, result: IntentResolverResult) {
+        val intentKey = keyOf(sourceIntent)
+        val savedAt = System.currentTimeMillis()
+        val displayed = (result.resolved + listOfNotNull(result.filteredItem)).associateBy { it.activityInfo }
+        val lastUpdateTimes = HashMap<String, Long>()
+
+        val snapshot = sorted.mapIndexedNotNull { index, info ->
+            val item = displayed[info.activityInfo] ?: return@mapIndexedNotNull null
+            val packageName = info.activityInfo.packageName
+            ChooserSnapshot(
+                intentKey = intentKey,
+                component = info.activityInfo.componentName().flattenToString(),
+                position = index,
+                label = item.displayLabel.toString(),
+                applicationLabel = item.extendedInfo?.toString(),
+                iconPath = iconLoader.keyFor(info.activityInfo).path,
+                lastUpdateTime = lastUpdateTimes.getOrPut(packageName) { lastUpdateTimeOf(packageName) ?: 0L },
+                savedAt = savedAt
+            )
+        }
+        dao.replace(intentKey, snapshot, MAX_SNAPSHOTS)
+    }
+
+    private fun keyOf(sourceIntent: Intent) = IntentShape.from(sourceIntent, hostIndexStore.index()).key
+
+    /**
+     * Checks the update time of each package of the snapshot, which is much cheaper than resolving the link.
+     */
+    private fun upToDateSnapshotOf(intentKey: String): List<ChooserSnapshot> {
+        val snapshot = dao.snapshotOf(intentKey)
+        val upToDate = snapshot.distinctBy { it.componentName.packageName }
+            .all { lastUpdateTimeOf(it.componentName.packageName) == it.lastUpdateTime }
+        if (upToDate) return snapshot
+        dao.delete(intentKey)
+        return emptyList()
+    }
+
+    private fun lastUpdateTimeOf(packageName: String) = try {
+        packageManager.getPackageInfo(packageName, 0).lastUpdateTime
+    } catch (e: PackageManager.NameNotFoundException) {
+        null
+    }
+
+    /**
+     * Added or modified packages may handle any kind of link, so they drop all the snapshots.
+     */
+    private fun invalidate(change: PackageChange) {
+        if (change.type == PackageChange.Type.REMOVED) {
+            dao.deleteWithPackage(change.packageName)
+        } else {
+            dao.deleteAll()
+        }
+    }
+
+    private fun ChooserSnapshot.toDisplayActivityInfo(): DisplayActivityInfo {
+        val target = componentName
+        val activityInfo = ActivityInfo().apply {
+            packageName = target.packageName
+            name = target.className
+            applicationInfo = ApplicationInfo().apply {
+                packageName = target.packageName
+            }
+        }
+        return DisplayActivityInfo(activityInfo, label, applicationLabel).apply {
+            displayIcon = iconLoader.loadCached(iconPath)
+        }
+    }
+
+    companion object {
+        private const val MAX_SNAPSHOTS = 64
+    }
+}
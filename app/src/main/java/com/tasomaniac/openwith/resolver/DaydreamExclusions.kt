@@ -0,0 +1,63 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.Intent
+import android.content.pm.PackageManager
+import android.os.Build.VERSION.SDK_INT
+import android.os.Build.VERSION_CODES.M
+import java.util.concurrent.atomic.AtomicInteger
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Excludes the Daydream VR activities, which also declare handlers for links.
+ *
+ * They are queried once, and again only after a package is added or modified.
+ * Removed packages are dropped from the set without a query.
+ *
+ * Each change bumps a generation, so a query which was in flight during a change isn't kept.
+ */
+@Singleton
+class DaydreamExclusions @Inject constructor(
+    private val packageManager: PackageManager,
+    packageChangeMonitor: PackageChangeMonitor
+) : ExclusionProvider {
+
+    @Volatile private var excluded: Set<String>? = null
+    private val generation = AtomicInteger()
+
+    init {
+        packageChangeMonitor.changes().subscribe(::invalidate)
+    }
+
+    override fun excludedKeys(): Set<String> {
+        excluded?.let { return it }
+        val queriedAt = generation.get()
+        val queried = query()
+        synchronized(this) {
+            if (generation.get() == queriedAt) excluded = queried
+        }
+        return queried
+    }
+
+    private fun query(): Set<String> {
+        val flag = if (SDK_INT >= M) PackageManager.MATCH_ALL else PackageManager.MATCH_DEFAULT_ONLY
+        val vr = Intent(Intent.ACTION_MAIN).addCategory(CATEGORY_DAYDREAM)
+        return packageManager.queryIntentActivities(vr, flag).mapTo(HashSet<String>()) { ResolveListFilter.keyOf(it) }
+    }
+
+    private fun invalidate(change: PackageChange) {
+        synchronized(this) {
+            generation.incrementAndGet()
+            val current = excluded ?: return
+            excluded = if (change.type == PackageChange.Type.REMOVED) {
+                current.filterTo(HashSet<String>()) { !it.startsWith("${change.packageName}/") }
+            } else {
+                null
+            }
+        }
+    }
+
+    companion object {
+        private const val CATEGORY_DAYDREAM = "com.google.intent.category.DAYDREAM"
+    }
+}
@@ -35,6 +35,8 @@ internal class DefaultResolverPresenter @Inject constructor(
         private val navigation: ResolverView.Navigation
     ) : ResolverUseCase.Listener {
 
+        private var displayed: IntentResolverResult? = null
+
         override fun onPreferredResolved(
             uri: Uri,
             preferredApp: PreferredApp,
@@ -59,6 +61,14 @@ internal class DefaultResolverPresenter @Inject constructor(
         override fun onIntentResolved(result: IntentResolverResult) {
             viewState.filteredItem = result.filteredItem
 
+            if (result.fromSnapshot) {
+                // The snapshot can be outdated, leave the decisions to the actual result.
+                if (result.totalCount() > 1) {
+                    display(result)
+                }
+                return
+            }
+
             if (result.isEmpty) {
                 Timber.e("No app is found to handle url: %s", sourceIntent.dataString)
                 view.toast(R.string.empty_resolver_activity)
@@ -79,11 +89,25 @@ internal class DefaultResolverPresenter @Inject constructor(
                 }
             }
 
+            display(result)
+        }
+
+        private fun display(result: IntentResolverResult) {
+            val displayed = displayed
+            this.displayed = result
+            if (displayed != null && displayed.hasSameShapeAs(result)) {
+                view.updateData(result)
+                view.setTitle(titleForAction(result.filteredItem))
+                return
+            }
             view.displayData(result)
             view.setTitle(titleForAction(result.filteredItem))
             view.setupActionButtons()
         }
 
+        private fun IntentResolverResult.hasSameShapeAs(other: IntentResolverResult) =
+            (filteredItem == null) == (other.filteredItem == null) && showExtended == other.showExtended
+
         private fun titleForAction(filteredItem: DisplayActivityInfo?): String {
             return if (filteredItem != null) {
                 resources.getString(R.string.which_view_application_named, filteredItem.displayLabel)
@@ -5,5 +5,8 @@ import androidx.recyclerview.widget.DiffUtil
 object DiffUtilsCallback : DiffUtil.ItemCallback<DisplayActivityInfo>() {
     override fun areItemsTheSame(oldItem: DisplayActivityInfo, newItem: DisplayActivityInfo) = oldItem == newItem
 
-    override fun areContentsTheSame(oldItem: DisplayActivityInfo, newItem: DisplayActivityInfo) = true
+    override fun areContentsTheSame(oldItem: DisplayActivityInfo, newItem: DisplayActivityInfo) =
+        oldItem.displayLabel.toString() == newItem.displayLabel.toString() &&
+            oldItem.extendedInfo?.toString() == newItem.extendedInfo?.toString() &&
+            (oldItem.displayIcon == null) == (newItem.displayIcon == null)
 }
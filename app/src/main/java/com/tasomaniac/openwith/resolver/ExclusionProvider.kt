@@ -0,0 +1,18 @@
+package com.tasomaniac.openwith.resolver
+
+import androidx.annotation.WorkerThread
+
+/**
+ * Handlers which are never shown in the chooser.
+ *
+ * Called for every link, so implementations keep their handlers instead of querying them each time.
+ * Bound into a set in [ResolverModule].
+ */
+interface ExclusionProvider {
+
+    /**
+     * @return the keys of the excluded handlers, as given by [ResolveListFilter.keyOf].
+     */
+    @WorkerThread
+    fun excludedKeys(): Set<String>
+}
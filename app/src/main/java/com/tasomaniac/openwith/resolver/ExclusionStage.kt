@@ -0,0 +1,15 @@
+package com.tasomaniac.openwith.resolver
+
+import javax.inject.Inject
+
+/**
+ * Removes the handlers of every [ExclusionProvider] from the resolve list.
+ */
+class ExclusionStage @Inject constructor(
+    private val exclusionProviders: Set<@JvmSuppressWildcards ExclusionProvider>
+) {
+
+    fun process(filter: ResolveListFilter) {
+        exclusionProviders.forEach { filter.excludeKeys(it.excludedKeys()) }
+    }
+}
@@ -0,0 +1,143 @@
+package com.tasomaniac.openwith.resolver
+
+import android.app.Application
+import android.content.pm.ActivityInfo
+import android.content.pm.PackageManager
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.os.Build.VERSION.SDK_INT
+import android.os.Build.VERSION_CODES.P
+import android.util.LruCache
+import com.tasomaniac.openwith.rx.SchedulingStrategy
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Two level cache of rasterized activity icons.
+ *
+ * The first level is an in-memory LRU bounded by the byte size of the bitmaps.
+ * The second level keeps pre-scaled PNGs under the cache directory so that a cold process
+ * doesn't need to load the [android.content.res.Resources] of other apps.
+ *
+ * Entries are keyed by the version code of the package, and dropped when the package changes.
+ * Those of packages which changed while the process wasn't running are swept when the cache is created.
+ */
+@Singleton
+class IconCache @Inject constructor(
+    app: Application,
+    private val packageManager: PackageManager,
+    private val scheduling: SchedulingStrategy,
+    packageChangeMonitor: PackageChangeMonitor
+) {
+
+    private val directory = File(app.cacheDir, "icons")
+    private val versionCodes = ConcurrentHashMap<String, Long>()
+    private val memory = object : LruCache<String, Bitmap>(MEMORY_CACHE_SIZE) {
+        override fun sizeOf(key: String, value: Bitmap) = value.byteCount
+    }
+
+    init {
+        packageChangeMonitor.changes().subscribe { invalidate(it.packageName) }
+        scheduling.runOnExecutor { sweep() }
+    }
+
+    fun keyFor(activity: ActivityInfo, density: Int) =
+        IconKey(activity.packageName, activity.name, versionCodeOf(activity.packageName), density)
+
+    fun get(key: IconKey) = get(key.path)
+
+    /**
+     * @param path [IconKey.path] of a previously cached icon.
+     */
+    fun get(path: String): Bitmap? = memory.get(path) ?: readFromDisk(path)?.also { memory.put(path, it) }
+
+    /**
+     * The icon is available from memory right away, and written to the disk in the background.
+     */
+    fun put(key: IconKey, bitmap: Bitmap) {
+        memory.put(key.path, bitmap)
+        scheduling.runOnExecutor { writeToDisk(key.path, bitmap) }
+    }
+
+    private fun readFromDisk(path: String): Bitmap? {
+        val file = File(directory, path)
+        return if (file.exists()) BitmapFactory.decodeFile(file.path) else null
+    }
+
+    private fun writeToDisk(path: String, bitmap: Bitmap) {
+        val file = File(directory, path)
+        val temp = File(file.parentFile, file.name + ".tmp")
+        try {
+            file.parentFile.mkdirs()
+            val compressed = temp.outputStream().use { bitmap.compress(Bitmap.CompressFormat.PNG, PNG_QUALITY, it) }
+            if (!compressed || !temp.renameTo(file)) {
+                Timber.e("Couldn't write icon %s to disk cache", path)
+                temp.delete()
+            }
+        } catch (e: IOException) {
+            Timber.e(e, "Couldn't write icon to disk cache")
+            temp.delete()
+        }
+    }
+
+    @Suppress("DEPRECATION")
+    private fun versionCodeOf(packageName: String) = versionCodes.getOrPut(packageName) {
+        try {
+            val packageInfo = packageManager.getPackageInfo(packageName, 0)
+            if (SDK_INT >= P) packageInfo.longVersionCode else packageInfo.versionCode.toLong()
+        } catch (e: PackageManager.NameNotFoundException) {
+            0L
+        }
+    }
+
+    private fun invalidate(packageName: String) {
+        versionCodes.remove(packageName)
+        memory.snapshot().keys
+            .filter { it.startsWith("$packageName/") }
+            .forEach { memory.remove(it) }
+        scheduling.runOnExecutor { File(directory, packageName).deleteRecursively() }
+    }
+
+    /**
+     * Deletes the icons whose version code is no longer the one of their package, including those of
+     * removed packages, and the leftovers of writes which didn't finish. Directories left empty are deleted too.
+     */
+    private fun sweep() {
+        directory.listFiles()?.forEach { packageDirectory ->
+            packageDirectory.listFiles()
+                ?.filter { isStale(it, packageDirectory.name) }
+                ?.forEach { it.delete() }
+            packageDirectory.delete()
+        }
+    }
+
+    private fun isStale(file: File, packageName: String): Boolean {
+        if (!file.name.endsWith(PNG_SUFFIX)) return true
+        val versionCode = file.name.removeSuffix(PNG_SUFFIX).split('-').dropLast(1).lastOrNull()?.toLongOrNull()
+        return versionCode != versionCodeOf(packageName)
+    }
+
+    companion object {
+        private const val PNG_SUFFIX = ".png"
+        private const val MEMORY_CACHE_SIZE = 8 * 1024 * 1024
+        private const val PNG_QUALITY = 100
+    }
+}
+
+data class IconKey(
+    val packageName: String,
+    val className: String,
+    val versionCode: Long,
+    val density: Int
+) {
+
+    /**
+     * Location of the icon relative to the disk cache. Can be persisted to find the icon again later.
+     */
+    val path: String
+        get() = "$packageName/$className-$versionCode-$density.png"
+}
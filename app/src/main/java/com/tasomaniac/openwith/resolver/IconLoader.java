@@ -3,20 +3,56 @@ package com.tasomaniac.openwith.resolver;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import androidx.annotation.Nullable;
 import timber.log.Timber;
 
+import static android.graphics.Bitmap.Config.ARGB_8888;
+
 public class IconLoader {
 
     private final PackageManager packageManager;
+    private final IconCache iconCache;
+    private final Resources resources;
     private final int iconDpi;
+    private final int iconSize;
 
-    public IconLoader(PackageManager packageManager, int iconDpi) {
+    public IconLoader(PackageManager packageManager, IconCache iconCache, Resources resources, int iconDpi, int iconSize) {
         this.packageManager = packageManager;
+        this.iconCache = iconCache;
+        this.resources = resources;
         this.iconDpi = iconDpi;
+        this.iconSize = iconSize;
     }
 
     public Drawable loadFor(ActivityInfo activity) {
+        IconKey key = keyFor(activity);
+        Bitmap icon = iconCache.get(key);
+        if (icon == null) {
+            icon = rasterize(loadDrawable(activity));
+            iconCache.put(key, icon);
+        }
+        return new BitmapDrawable(resources, icon);
+    }
+
+    /**
+     * Loads the icon which was previously cached under the given {@link IconKey#getPath()}
+     * without touching the {@link PackageManager}.
+     */
+    @Nullable
+    public Drawable loadCached(String iconPath) {
+        Bitmap icon = iconCache.get(iconPath);
+        return icon != null ? new BitmapDrawable(resources, icon) : null;
+    }
+
+    public IconKey keyFor(ActivityInfo activity) {
+        return iconCache.keyFor(activity, iconDpi);
+    }
+
+    private Drawable loadDrawable(ActivityInfo activity) {
         try {
             String packageName = activity.packageName;
             if (activity.icon != 0) {
@@ -36,4 +72,27 @@ public class IconLoader {
         Resources res = packageManager.getResourcesForApplication(packageName);
         return res.getDrawableForDensity(resId, iconDpi);
     }
+
+    /**
+     * Draws the icon centered in a square of {@link #iconSize}, scaled to fit without changing its aspect ratio.
+     * Drawables without an intrinsic size fill the square.
+     */
+    private Bitmap rasterize(Drawable drawable) {
+        Bitmap bitmap = Bitmap.createBitmap(iconSize, iconSize, ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (width <= 0 || height <= 0) {
+            drawable.setBounds(0, 0, iconSize, iconSize);
+        } else {
+            float scale = Math.min((float) iconSize / width, (float) iconSize / height);
+            int scaledWidth = Math.round(width * scale);
+            int scaledHeight = Math.round(height * scale);
+            int left = (iconSize - scaledWidth) / 2;
+            int top = (iconSize - scaledHeight) / 2;
+            drawable.setBounds(left, top, left + scaledWidth, top + scaledHeight);
+        }
+        drawable.draw(canvas);
+        return bitmap;
+    }
 }
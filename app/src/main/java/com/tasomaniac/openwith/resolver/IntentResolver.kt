@@ -2,27 +2,25 @@ package com.tasomaniac.openwith.resolver
 
 import android.content.ComponentName
 import android.content.Intent
-import android.content.pm.PackageManager
 import android.content.pm.ResolveInfo
-import android.os.Build.VERSION.SDK_INT
-import android.os.Build.VERSION_CODES.M
-import com.tasomaniac.openwith.BuildConfig
 import com.tasomaniac.openwith.browser.resolver.BrowserHandler
 import com.tasomaniac.openwith.rx.SchedulingStrategy
 import com.tasomaniac.openwith.util.Intents
+import io.reactivex.Maybe
 import io.reactivex.Observable
 import io.reactivex.disposables.Disposable
 import io.reactivex.disposables.Disposables
-import java.util.ArrayList
 import javax.inject.Inject
 
 internal class IntentResolver @Inject constructor(
-    private val packageManager: PackageManager,
+    private val resolutionContext: ResolutionContext,
     private val schedulingStrategy: SchedulingStrategy,
     private val callerPackage: CallerPackage,
     private val resolveListGrouper: ResolveListGrouper,
     private val browserHandlerFactory: BrowserHandler.Factory,
-    private val resolveListDuplicateRemover: ResolveListDuplicateRemover,
+    private val exclusionStage: ExclusionStage,
+    private val snapshots: ChooserSnapshots,
+    private val lastResults: LastResolveResults,
     val sourceIntent: Intent
 ) {
 
@@ -30,51 +28,107 @@ internal class IntentResolver @Inject constructor(
     private var listener = Listener.NO_OP
     private var disposable: Disposable = Disposables.empty()
 
-    var lastChosenComponent: ComponentName? = null
+    @Volatile var lastChosenComponent: ComponentName? = null
 
     fun bind(listener: Listener) {
         this.listener = listener
 
         if (result == null) {
-            resolve()
+            resolve(withSnapshot = true)
         } else {
             listener.onIntentResolved(result!!)
         }
     }
 
+    /**
+     * Resolves in the background and displays the last result of the host in the meantime,
+     * unless another app is launched instead. A stale result which arrives after the actual one is dropped.
+     *
+     * @param lastChosen looked up concurrently with the resolve, only awaited before grouping.
+     * @param launchedInstead the app which is launched without the chooser, if any.
+     * The last result is displayed only once it completes empty, so that the chooser doesn't flash before it.
+     */
+    fun bind(listener: Listener, lastChosen: Maybe<ComponentName>, launchedInstead: Maybe<*>) {
+        this.listener = listener
+
+        val result = result
+        if (result != null) {
+            listener.onIntentResolved(result)
+            return
+        }
+        val stale = launchedInstead.onErrorComplete().isEmpty.flatMapMaybe { noneLaunched ->
+            if (noneLaunched) readLastResult().switchIfEmpty(readSnapshot()) else Maybe.empty()
+        }
+        val fresh = Observable.fromCallable { doResolve(lastChosen) }
+        subscribe(
+            stale.toObservable().compose(schedulingStrategy.forObservable())
+                .mergeWith(fresh.compose(schedulingStrategy.forObservable()))
+        )
+    }
+
     fun unbind() {
         this.listener = Listener.NO_OP
     }
 
     fun resolve() {
-        disposable = Observable
-            .fromCallable { doResolve() }
-            .compose(schedulingStrategy.forObservable())
-            .subscribe { data ->
+        resolutionContext.invalidate()
+        resolve(withSnapshot = false)
+    }
+
+    private fun resolve(withSnapshot: Boolean) {
+        val snapshot = if (withSnapshot) readSnapshot() else Maybe.empty<IntentResolverResult>()
+        subscribe(
+            snapshot.toObservable()
+                .concatWith(Observable.fromCallable { doResolve(Maybe.empty()) })
+                .compose(schedulingStrategy.forObservable())
+        )
+    }
+
+    private fun subscribe(results: Observable<IntentResolverResult>) {
+        disposable = results.subscribe { data ->
+            if (data.fromSnapshot && result != null) return@subscribe
+            if (!data.fromSnapshot) {
                 result = data
-                listener.onIntentResolved(data)
             }
+            listener.onIntentResolved(data)
+        }
+    }
+
+    private fun readLastResult() = Maybe.fromCallable<IntentResolverResult> {
+        sourceIntent.data?.host?.let { lastResults.get(it) }?.let { lastResult ->
+            val isCaller = { item: DisplayActivityInfo -> item.packageName() == callerPackage.callerPackage }
+            lastResult.copy(
+                resolved = lastResult.resolved.filterNot(isCaller),
+                filteredItem = lastResult.filteredItem?.takeUnless(isCaller)
+            )
+        }
     }
 
+    private fun readSnapshot() =
+        Maybe.fromCallable<IntentResolverResult> {
+            snapshots.read(sourceIntent, lastChosenComponent, callerPackage)
+        }
+
     fun release() {
         disposable.dispose()
     }
 
-    private fun doResolve(): IntentResolverResult {
-        val flag = if (SDK_INT >= M) PackageManager.MATCH_ALL else PackageManager.MATCH_DEFAULT_ONLY
-        val currentResolveList = ArrayList(packageManager.queryIntentActivities(sourceIntent, flag))
-        currentResolveList.removeAll {
-            it.activityInfo.packageName == BuildConfig.APPLICATION_ID
-        }
+    private fun doResolve(lastChosen: Maybe<ComponentName>): IntentResolverResult {
+        val currentResolveList = resolutionContext.resolveList(sourceIntent)
+        val filter = ResolveListFilter()
         if (Intents.isHttp(sourceIntent)) {
-            browserHandlerFactory.create(currentResolveList).handleBrowsers()
+            browserHandlerFactory.create(resolutionContext, filter).handleBrowsers()
         }
+        exclusionStage.process(filter)
+        callerPackage.removeFrom(filter)
+        filter.applyTo(currentResolveList)
 
-        resolveListDuplicateRemover.process(currentResolveList)
-        callerPackage.removeFrom(currentResolveList)
-
+        lastChosen.onErrorComplete().blockingGet()?.let { lastChosenComponent = it }
         val resolved = groupResolveList(currentResolveList)
-        return IntentResolverResult(resolved, resolveListGrouper.filteredItem, resolveListGrouper.showExtended)
+        val data = IntentResolverResult(resolved, resolveListGrouper.filteredItem, resolveListGrouper.showExtended)
+        sourceIntent.data?.host?.let { lastResults.put(it, data) }
+        schedulingStrategy.runOnExecutor { snapshots.save(sourceIntent, currentResolveList, data) }
+        return data
     }
 
     private fun groupResolveList(currentResolveList: List<ResolveInfo>): List<DisplayActivityInfo> {
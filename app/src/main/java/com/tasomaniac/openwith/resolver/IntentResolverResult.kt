@@ -1,9 +1,13 @@
 package com.tasomaniac.openwith.resolver
 
-data class IntentResolverResult(
+data class IntentResolverResult @JvmOverloads constructor(
     val resolved: List<DisplayActivityInfo>,
     val filteredItem: DisplayActivityInfo?,
-    val showExtended: Boolean
+    val showExtended: Boolean,
+    /**
+     * Whether the result comes from the snapshot of the last resolve instead of the [android.content.pm.PackageManager].
+     */
+    val fromSnapshot: Boolean = false
 ) {
 
     val isEmpty get() = totalCount() == 0
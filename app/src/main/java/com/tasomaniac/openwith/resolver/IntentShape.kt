@@ -0,0 +1,65 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.Intent
+import com.tasomaniac.openwith.hostindex.HostIndex
+import com.tasomaniac.openwith.util.Intents
+
+/**
+ * The parts of an [Intent] that intent filters of link handlers are matched against.
+ *
+ * Links whose paths are matched by the same filters of their host share a [pathClass], the longest path prefix
+ * of those filters as found in the [HostIndex], so that a different link of the same host has the same shape.
+ * When there is no index, or a filter of the host only matches some of the paths with its prefix,
+ * the whole path is kept instead. The query and fragment are not matched.
+ */
+data class IntentShape(
+    val action: String?,
+    val scheme: String?,
+    val host: String?,
+    val pathClass: String?,
+    val type: String?
+) {
+
+    /**
+     * Stable representation of the shape which can be persisted.
+     */
+    val key: String
+        get() = "$action|$scheme|$host|$pathClass|$type"
+
+    companion object {
+
+        private const val PREFIX_CLASS = "*"
+
+        @JvmStatic
+        @JvmOverloads
+        fun from(intent: Intent, hostIndex: HostIndex? = null): IntentShape {
+            val data = intent.data
+            return IntentShape(
+                action = intent.action,
+                scheme = data?.scheme?.toLowerCase(),
+                host = data?.host?.toLowerCase(),
+                pathClass = pathClassOf(intent, hostIndex),
+                type = intent.type
+            )
+        }
+
+        /**
+         * Classes end with [PREFIX_CLASS], so that they don't collide with a whole path.
+         */
+        private fun pathClassOf(intent: Intent, hostIndex: HostIndex?): String? {
+            val path = intent.data?.path
+            val host = intent.data?.host
+            if (hostIndex == null || host == null) return path
+            val pathClass = if (isIndexed(intent)) hostIndex.pathClassOf(host, path.orEmpty()) else null
+            return pathClass?.let { it + PREFIX_CLASS } ?: path
+        }
+
+        /**
+         * The index only has the filters of untyped http links.
+         */
+        private fun isIndexed(intent: Intent) = when {
+            intent.action != Intent.ACTION_VIEW || intent.type != null -> false
+            else -> Intents.isHttp(intent)
+        }
+    }
+}
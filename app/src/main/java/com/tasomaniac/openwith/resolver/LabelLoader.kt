@@ -0,0 +1,75 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.pm.ActivityInfo
+import android.content.pm.PackageManager
+import android.content.pm.ResolveInfo
+import timber.log.Timber
+import java.util.IdentityHashMap
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit.SECONDS
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Loads the labels of a resolve list in one go, in parallel across packages.
+ */
+@Singleton
+class LabelLoader @Inject constructor(private val packageManager: PackageManager) {
+
+    private val executor = ThreadPoolExecutor(
+        POOL_SIZE,
+        POOL_SIZE,
+        KEEP_ALIVE_IN_SEC,
+        SECONDS,
+        LinkedBlockingQueue<Runnable>()
+    ).apply {
+        allowCoreThreadTimeOut(true)
+    }
+
+    fun load(list: List<ResolveInfo>): LabelTable {
+        val labels = IdentityHashMap<ResolveInfo, CharSequence?>(list.size)
+        val tasks = list.groupBy { it.activityInfo.packageName }.values.map { infos ->
+            Callable { infos.map { it to it.loadLabel(packageManager) } }
+        }
+        try {
+            executor.invokeAll(tasks).forEach { future ->
+                labels.putAll(future.get())
+            }
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        } catch (e: ExecutionException) {
+            Timber.e(e, "Couldn't load labels")
+        }
+        return LabelTable(packageManager, labels)
+    }
+
+    companion object {
+        private const val POOL_SIZE = 4
+        private const val KEEP_ALIVE_IN_SEC = 5L
+    }
+}
+
+/**
+ * Labels of a single resolve list. Every stage that sorts or groups the list reads from here
+ * so that each label is loaded only once per resolve.
+ *
+ * Labels that are not loaded yet are loaded on demand, which is not thread safe.
+ */
+class LabelTable internal constructor(
+    private val packageManager: PackageManager,
+    private val labels: MutableMap<ResolveInfo, CharSequence?>
+) {
+
+    private val applicationLabels = HashMap<String, CharSequence?>()
+
+    fun labelOf(info: ResolveInfo): CharSequence? =
+        labels.getOrPut(info) { info.loadLabel(packageManager) }
+
+    fun applicationLabelOf(activityInfo: ActivityInfo): CharSequence? =
+        applicationLabels.getOrPut(activityInfo.packageName) {
+            activityInfo.applicationInfo.loadLabel(packageManager)
+        }
+}
@@ -0,0 +1,63 @@
+package com.tasomaniac.openwith.resolver
+
+import android.util.LruCache
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps the last [IntentResolverResult] per host in memory so that the chooser
+ * can be displayed right away while the actual resolve is running.
+ *
+ * Removed packages evict the results they were part of. Other changes are picked up
+ * by the resolve that follows the cached result anyway.
+ */
+@Singleton
+class LastResolveResults @Inject constructor(packageChangeMonitor: PackageChangeMonitor) {
+
+    private val cache = LruCache<String, IntentResolverResult>(MAX_ENTRIES)
+
+    init {
+        packageChangeMonitor.changes()
+            .filter { it.type == PackageChange.Type.REMOVED }
+            .subscribe { evict(it.packageName) }
+    }
+
+    /**
+     * @return a copy of the last result of the [host] which is safe to be displayed, if any.
+     */
+    fun get(host: String): IntentResolverResult? {
+        val result = cache.get(host) ?: return null
+        return IntentResolverResult(
+            resolved = result.resolved.map { it.detached() },
+            filteredItem = result.filteredItem?.detached(),
+            showExtended = result.showExtended,
+            fromSnapshot = true
+        )
+    }
+
+    fun put(host: String, result: IntentResolverResult) {
+        cache.put(host, result)
+    }
+
+    private fun evict(packageName: String) {
+        cache.snapshot().forEach { (host, result) ->
+            if (result.contains(packageName)) {
+                cache.remove(host)
+            }
+        }
+    }
+
+    private fun IntentResolverResult.contains(packageName: String) =
+        filteredItem?.packageName() == packageName || resolved.any { it.packageName() == packageName }
+
+    /**
+     * A drawable can only be displayed in one view at a time. Each chooser gets its own copy.
+     */
+    private fun DisplayActivityInfo.detached() = copy().also {
+        it.displayIcon = displayIcon?.constantState?.newDrawable()
+    }
+
+    companion object {
+        private const val MAX_ENTRIES = 16
+    }
+}
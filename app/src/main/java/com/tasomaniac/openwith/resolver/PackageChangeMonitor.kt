@@ -0,0 +1,59 @@
+package com.tasomaniac.openwith.resolver
+
+import android.app.Application
+import android.os.Looper
+import io.reactivex.Observable
+import io.reactivex.subjects.PublishSubject
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Process-wide [PackageMonitor] which stays registered for the lifetime of the app
+ * so that singleton caches can invalidate themselves when installed packages change.
+ *
+ * Changes are emitted on the main thread.
+ */
+@Singleton
+class PackageChangeMonitor @Inject constructor(app: Application) {
+
+    private val changes = PublishSubject.create<PackageChange>()
+
+    private val monitor = object : PackageMonitor() {
+
+        override fun onPackageAdded(packageName: String, uid: Int) = emit(packageName, PackageChange.Type.ADDED)
+
+        override fun onPackageRemoved(packageName: String, uid: Int) = emit(packageName, PackageChange.Type.REMOVED)
+
+        override fun onPackageModified(packageName: String) = emit(packageName, PackageChange.Type.MODIFIED)
+
+        override fun onPackagesAvailable(packages: Array<String>) {
+            packages.forEach { emit(it, PackageChange.Type.ADDED) }
+        }
+
+        override fun onPackagesUnavailable(packages: Array<String>) {
+            packages.forEach { emit(it, PackageChange.Type.REMOVED) }
+        }
+    }
+
+    init {
+        monitor.register(app, Looper.getMainLooper(), true)
+    }
+
+    fun changes(): Observable<PackageChange> = changes
+
+    private fun emit(packageName: String, type: PackageChange.Type) {
+        changes.onNext(PackageChange(packageName, type))
+    }
+}
+
+data class PackageChange(
+    val packageName: String,
+    val type: Type
+) {
+
+    enum class Type {
+        ADDED,
+        REMOVED,
+        MODIFIED
+    }
+}
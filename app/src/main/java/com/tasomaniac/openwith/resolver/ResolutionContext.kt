@@ -0,0 +1,45 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.Intent
+import android.content.pm.ResolveInfo
+import androidx.annotation.WorkerThread
+import com.tasomaniac.openwith.browser.resolver.BrowserResolver
+import java.util.ArrayList
+
+/**
+ * What is resolved while a link is being opened, from the redirect check until the chooser is shown.
+ *
+ * Each kind of query runs at most once per link, however many steps need its result.
+ */
+class ResolutionContext(
+    val token: String,
+    private val resolveListCache: ResolveListCache,
+    private val browserResolver: BrowserResolver
+) {
+
+    private val resolveLists = HashMap<IntentShape, List<ResolveInfo>>()
+    private var browsers: List<ResolveInfo>? = null
+
+    /**
+     * @return a mutable copy of the handlers of the [intent], excluding this app.
+     */
+    @WorkerThread
+    @Synchronized
+    fun resolveList(intent: Intent): MutableList<ResolveInfo> {
+        val resolved = resolveLists.getOrPut(IntentShape.from(intent)) { resolveListCache.query(intent) }
+        return ArrayList(resolved)
+    }
+
+    @WorkerThread
+    @Synchronized
+    fun browsers(): List<ResolveInfo> = browsers ?: browserResolver.queryBrowsers().also { browsers = it }
+
+    /**
+     * Forgets what is resolved, so that it is queried again after packages change.
+     */
+    @Synchronized
+    fun invalidate() {
+        resolveLists.clear()
+        browsers = null
+    }
+}
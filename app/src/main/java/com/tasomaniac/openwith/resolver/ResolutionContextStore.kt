@@ -0,0 +1,51 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.Intent
+import android.util.LruCache
+import com.tasomaniac.openwith.browser.resolver.BrowserResolver
+import java.util.UUID
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Hands a [ResolutionContext] from one activity to the next, keyed by a token in their intents.
+ *
+ * The token is random so that an intent restored by a new process never picks up a context of another link.
+ * Contexts are dropped when packages change, since their results may be stale.
+ */
+@Singleton
+class ResolutionContextStore @Inject constructor(
+    private val resolveListCache: ResolveListCache,
+    private val browserResolver: BrowserResolver,
+    packageChangeMonitor: PackageChangeMonitor
+) {
+
+    private val contexts = LruCache<String, ResolutionContext>(MAX_CONTEXTS)
+
+    init {
+        packageChangeMonitor.changes().subscribe { contexts.evictAll() }
+    }
+
+    fun create(): ResolutionContext {
+        val context = ResolutionContext(UUID.randomUUID().toString(), resolveListCache, browserResolver)
+        contexts.put(context.token, context)
+        return context
+    }
+
+    /**
+     * @return the context the [intent] is attached to, or a new one if it has none or it is dropped.
+     */
+    fun contextOf(intent: Intent): ResolutionContext {
+        val token = intent.getStringExtra(EXTRA_RESOLUTION_TOKEN) ?: return create()
+        return contexts.get(token) ?: create()
+    }
+
+    companion object {
+        const val EXTRA_RESOLUTION_TOKEN = "EXTRA_RESOLUTION_TOKEN"
+        private const val MAX_CONTEXTS = 8
+
+        @JvmStatic
+        fun attach(intent: Intent, context: ResolutionContext): Intent =
+            intent.putExtra(EXTRA_RESOLUTION_TOKEN, context.token)
+    }
+}
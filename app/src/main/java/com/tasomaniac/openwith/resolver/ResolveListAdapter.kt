@@ -4,16 +4,22 @@ import android.view.ViewGroup
 import androidx.recyclerview.widget.ListAdapter
 import androidx.recyclerview.widget.RecyclerView
 import javax.inject.Inject
-import kotlin.properties.Delegates.observable
 
 class ResolveListAdapter @Inject constructor(
     private val viewHolderFactory: ApplicationViewHolder.Factory
 ) : ListAdapter<DisplayActivityInfo, ApplicationViewHolder>(DiffUtilsCallback) {
 
-    var checkedItemPosition by observable(RecyclerView.NO_POSITION) { _, oldValue, newValue ->
-        notifyItemChanged(newValue, true)
-        notifyItemChanged(oldValue, false)
-    }
+    /**
+     * Flattened component of the checked item. It is kept instead of the position,
+     * since the list may be reordered when it is resolved again.
+     */
+    var checkedItemKey: String? = null
+        set(value) {
+            val oldPosition = positionOf(field)
+            field = value
+            notifyItemChanged(positionOf(value), true)
+            notifyItemChanged(oldPosition, false)
+        }
     var displayExtendedInfo = false
     var selectionEnabled = false
     var itemClickListener: ItemClickListener? = null
@@ -24,16 +30,23 @@ class ResolveListAdapter @Inject constructor(
 
     override fun onBindViewHolder(holder: ApplicationViewHolder, position: Int, payloads: List<Any>) {
         super.onBindViewHolder(holder, position, payloads)
-        holder.itemView.isActivated = position == checkedItemPosition
+        holder.itemView.isActivated = checkedItemKey != null && keyOf(getItem(position)) == checkedItemKey
     }
 
     override fun onBindViewHolder(holder: ApplicationViewHolder, position: Int) {
         val itemClickListener = ItemClickListener {
             itemClickListener?.onItemClick(it)
             if (selectionEnabled) {
-                checkedItemPosition = holder.adapterPosition
+                checkedItemKey = keyOf(it)
             }
         }
         holder.bind(getItem(position), itemClickListener, itemLongClickListener)
     }
+
+    private fun positionOf(key: String?): Int {
+        if (key == null) return RecyclerView.NO_POSITION
+        return (0 until itemCount).firstOrNull { keyOf(getItem(it)) == key } ?: RecyclerView.NO_POSITION
+    }
+
+    private fun keyOf(item: DisplayActivityInfo) = "${item.packageName()}/${item.activityInfo.name}"
 }
@@ -0,0 +1,84 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.Intent
+import android.content.pm.PackageManager
+import android.content.pm.ResolveInfo
+import android.os.Build.VERSION.SDK_INT
+import android.os.Build.VERSION_CODES.M
+import android.util.LruCache
+import com.tasomaniac.openwith.BuildConfig
+import com.tasomaniac.openwith.hostindex.HostIndexStore
+import java.util.ArrayList
+import java.util.concurrent.atomic.AtomicInteger
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Keeps the result of [PackageManager.queryIntentActivities] per [IntentShape]
+ * so that opening the same kind of link again doesn't go through the binder.
+ * Links are classified by the [HostIndexStore] when it is ready, so that another link of the same host
+ * which the same filters match is the same kind of link.
+ *
+ * Removed packages only evict the entries they were part of. Added or modified packages
+ * may declare new intent filters for any shape, so they clear the whole cache.
+ * Each change bumps a generation, so a query which was in flight during a change isn't cached.
+ */
+@Singleton
+class ResolveListCache @Inject constructor(
+    private val packageManager: PackageManager,
+    private val hostIndexStore: HostIndexStore,
+    packageChangeMonitor: PackageChangeMonitor
+) {
+
+    private val cache = LruCache<IntentShape, List<ResolveInfo>>(MAX_ENTRIES)
+    private val generation = AtomicInteger()
+
+    init {
+        packageChangeMonitor.changes().subscribe(::invalidate)
+    }
+
+    /**
+     * Synchronized so that a speculative query and the chooser's own query of the same shape
+     * go through the [PackageManager] only once.
+     *
+     * @return a mutable copy of the handlers of the [intent], excluding this app.
+     */
+    @Synchronized
+    fun query(intent: Intent): MutableList<ResolveInfo> {
+        val queriedAt = generation.get()
+        val shape = IntentShape.from(intent, hostIndexStore.index())
+        val resolved = cache.get(shape) ?: queryAndCache(shape, intent, queriedAt)
+        return ArrayList(resolved)
+    }
+
+    /**
+     * @param queriedAt generation before the [shape] is classified, since the classes change with packages too.
+     */
+    private fun queryAndCache(shape: IntentShape, intent: Intent, queriedAt: Int): List<ResolveInfo> {
+        val flag = if (SDK_INT >= M) PackageManager.MATCH_ALL else PackageManager.MATCH_DEFAULT_ONLY
+        val resolved = packageManager.queryIntentActivities(intent, flag).filterNot {
+            it.activityInfo.packageName == BuildConfig.APPLICATION_ID
+        }
+        if (generation.get() == queriedAt) {
+            cache.put(shape, resolved)
+        }
+        return resolved
+    }
+
+    private fun invalidate(change: PackageChange) {
+        generation.incrementAndGet()
+        if (change.type != PackageChange.Type.REMOVED) {
+            cache.evictAll()
+            return
+        }
+        cache.snapshot().forEach { (shape, resolved) ->
+            if (resolved.any { it.activityInfo.packageName == change.packageName }) {
+                cache.remove(shape)
+            }
+        }
+    }
+
+    companion object {
+        private const val MAX_ENTRIES = 32
+    }
+}
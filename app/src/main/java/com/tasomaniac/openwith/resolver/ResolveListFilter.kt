@@ -0,0 +1,84 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.pm.ResolveInfo
+import java.util.ArrayList
+
+/**
+ * Collects what the chooser removes from and adds to the resolve list, and then applies it in a single pass.
+ *
+ * Handlers are matched by their flattened component names in hash sets,
+ * instead of comparing every handler with every browser or excluded activity.
+ */
+class ResolveListFilter {
+
+    private val replaced = HashSet<String>()
+    private val excluded = HashSet<String>()
+    private val excludedPackages = HashSet<String>()
+    private val appended = ArrayList<ResolveInfo>()
+
+    /**
+     * Removes the [handlers] from the list, unless they are [appended][append] back.
+     */
+    fun replace(handlers: Collection<ResolveInfo>) = apply {
+        handlers.mapTo(replaced) { it.key() }
+    }
+
+    /**
+     * Adds the [handlers] after the ones kept in the list, unless they are already kept.
+     */
+    fun append(handlers: Collection<ResolveInfo>) = apply {
+        appended.addAll(handlers)
+    }
+
+    /**
+     * Removes the [handlers] from the list, and doesn't let them be [appended][append].
+     */
+    fun exclude(handlers: Collection<ResolveInfo>) = apply {
+        handlers.mapTo(excluded) { it.key() }
+    }
+
+    /**
+     * @param keys of the excluded handlers, as given by [keyOf].
+     */
+    fun excludeKeys(keys: Collection<String>) = apply {
+        excluded.addAll(keys)
+    }
+
+    fun excludePackage(packageName: String) = apply {
+        excludedPackages.add(packageName)
+    }
+
+    fun applyTo(resolveList: MutableList<ResolveInfo>) {
+        val kept = HashSet<String>()
+        val filtered = ArrayList<ResolveInfo>(resolveList.size + appended.size)
+        resolveList.forEach {
+            val key = it.key()
+            if (key !in replaced && isAllowed(it, key)) {
+                filtered.add(it)
+                kept.add(key)
+            }
+        }
+        appended.forEach {
+            val key = it.key()
+            if (isAllowed(it, key) && kept.add(key)) {
+                filtered.add(it)
+            }
+        }
+        resolveList.clear()
+        resolveList.addAll(filtered)
+    }
+
+    private fun isAllowed(info: ResolveInfo, key: String) =
+        key !in excluded && info.activityInfo.packageName !in excludedPackages
+
+    private fun ResolveInfo.key() = keyOf(this)
+
+    companion object {
+
+        /**
+         * @return the flattened component name of the [handler].
+         */
+        @JvmStatic
+        fun keyOf(handler: ResolveInfo) = "${handler.activityInfo.packageName}/${handler.activityInfo.name}"
+    }
+}
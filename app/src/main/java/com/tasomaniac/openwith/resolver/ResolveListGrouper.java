@@ -2,33 +2,32 @@ package com.tasomaniac.openwith.resolver;
 
 import android.content.ComponentName;
 import android.content.pm.ActivityInfo;
-import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
 import androidx.annotation.Nullable;
 import dagger.Lazy;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 
 class ResolveListGrouper {
 
-    private final PackageManager packageManager;
+    private final LabelLoader labelLoader;
     private final IconLoader iconLoader;
     private final Lazy<ResolverComparator> resolverComparator;
 
     @Nullable private ComponentName lastChosenComponent;
+    private LabelTable labels;
 
     boolean showExtended;
     @Nullable DisplayActivityInfo filteredItem;
 
     @Inject ResolveListGrouper(
-            PackageManager packageManager,
+            LabelLoader labelLoader,
             IconLoader iconLoader,
             Lazy<ResolverComparator> resolverComparator) {
-        this.packageManager = packageManager;
+        this.labelLoader = labelLoader;
         this.iconLoader = iconLoader;
         this.resolverComparator = resolverComparator;
     }
@@ -41,7 +40,8 @@ class ResolveListGrouper {
             @Nullable ComponentName lastChosenComponent
     ) {
         this.lastChosenComponent = lastChosenComponent;
-        Collections.sort(current, resolverComparator.get());
+        labels = labelLoader.load(current);
+        resolverComparator.get().sort(current, labels);
         filteredItem = null;
         showExtended = false;
         List<DisplayActivityInfo> grouped = new ArrayList<>();
@@ -50,14 +50,14 @@ class ResolveListGrouper {
         // package name if necessary
         ResolveInfo r0 = current.get(0);
         int start = 0;
-        CharSequence r0Label = r0.loadLabel(packageManager);
+        CharSequence r0Label = labels.labelOf(r0);
         int size = current.size();
         for (int i = 1; i < size; i++) {
             if (r0Label == null) {
                 r0Label = r0.activityInfo.packageName;
             }
             ResolveInfo ri = current.get(i);
-            CharSequence riLabel = ri.loadLabel(packageManager);
+            CharSequence riLabel = labels.labelOf(ri);
             if (riLabel == null) {
                 riLabel = ri.activityInfo.packageName;
             }
@@ -97,7 +97,7 @@ class ResolveListGrouper {
         } else {
             showExtended = true;
             boolean usePkg = false;
-            CharSequence startApp = ro.activityInfo.applicationInfo.loadLabel(packageManager);
+            CharSequence startApp = labels.applicationLabelOf(ro.activityInfo);
             if (startApp == null) {
                 usePkg = true;
             }
@@ -107,7 +107,7 @@ class ResolveListGrouper {
                 duplicates.add(startApp);
                 for (int j = start + 1; j <= end; j++) {
                     ResolveInfo jRi = current.get(j);
-                    CharSequence jApp = jRi.activityInfo.applicationInfo.loadLabel(packageManager);
+                    CharSequence jApp = labels.applicationLabelOf(jRi.activityInfo);
                     if ((jApp == null) || (duplicates.contains(jApp))) {
                         usePkg = true;
                         break;
@@ -137,7 +137,7 @@ class ResolveListGrouper {
             return new DisplayActivityInfo(activityInfo, displayLabel, activityInfo.packageName);
         } else {
             // Use application name for all entries from start to end-1
-            CharSequence extendedLabel = activityInfo.applicationInfo.loadLabel(packageManager);
+            CharSequence extendedLabel = labels.applicationLabelOf(activityInfo);
             return new DisplayActivityInfo(activityInfo, displayLabel, extendedLabel);
         }
     }
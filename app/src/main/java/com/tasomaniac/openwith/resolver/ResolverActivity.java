@@ -15,6 +15,7 @@
  */
 package com.tasomaniac.openwith.resolver;
 
+import android.content.ComponentName;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
@@ -35,6 +36,7 @@ import dagger.android.support.DaggerAppCompatActivity;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.util.ArrayList;
 
 /**
  * This activity is displayed when the system attempts to start an Intent for
@@ -47,7 +49,11 @@ public class ResolverActivity extends DaggerAppCompatActivity implements
         ResolverView {
 
     public static final String EXTRA_ADD_TO_HOME_SCREEN = "EXTRA_ADD_TO_HOME_SCREEN";
-    private static final String KEY_CHECKED_POS = "KEY_CHECKED_POS";
+    /**
+     * Links shared together with this one, which are chosen for one after the other.
+     */
+    public static final String EXTRA_PENDING_LINKS = "EXTRA_PENDING_LINKS";
+    private static final String KEY_CHECKED_ITEM = "KEY_CHECKED_ITEM";
 
     @Inject ResolverPresenter presenter;
     @Inject ResolveListAdapter adapter;
@@ -80,11 +86,17 @@ public class ResolverActivity extends DaggerAppCompatActivity implements
         setupList(result, result.getShowExtended());
         setupFilteredItem(result.getFilteredItem());
         ResolverDrawerLayout rdl = findViewById(R.id.contentPanel);
-        rdl.setOnDismissedListener(this::finish);
+        rdl.setOnDismissedListener(this::dismiss);
         findViewById(R.id.button_always).setOnClickListener(v -> listener.onActionButtonClick(true));
         findViewById(R.id.button_once).setOnClickListener(v -> listener.onActionButtonClick(false));
     }
 
+    @Override
+    public void updateData(IntentResolverResult result) {
+        adapter.submitList(result.getResolved());
+        setupFilteredItem(result.getFilteredItem());
+    }
+
     private void setupList(IntentResolverResult data, boolean shouldDisplayExtendedInfo) {
         RecyclerView recyclerView = findViewById(R.id.resolver_list);
 
@@ -164,17 +176,17 @@ public class ResolverActivity extends DaggerAppCompatActivity implements
     @Override
     protected void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        outState.putInt(KEY_CHECKED_POS, adapter.getCheckedItemPosition());
+        outState.putString(KEY_CHECKED_ITEM, adapter.getCheckedItemKey());
     }
 
     @Override
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         super.onRestoreInstanceState(savedInstanceState);
 
-        int checkedPos = savedInstanceState.getInt(KEY_CHECKED_POS);
-        if (checkedPos != RecyclerView.NO_POSITION) {
+        String checkedItem = savedInstanceState.getString(KEY_CHECKED_ITEM);
+        if (checkedItem != null) {
             enableActionButtons();
-            adapter.setCheckedItemPosition(checkedPos);
+            adapter.setCheckedItemKey(checkedItem);
         }
     }
 
@@ -213,11 +225,34 @@ public class ResolverActivity extends DaggerAppCompatActivity implements
         this.listener = listener == null ? Listener.EMPTY : listener;
     }
 
+    @Override
+    public void onBackPressed() {
+        dismiss();
+    }
+
+    /**
+     * Every way the link is opened or skipped ends here, so the next pending link is started only once.
+     */
     @Override
     public void dismiss() {
         if (!isFinishing()) {
             finish();
+            startNextPendingLink();
+        }
+    }
+
+    private void startNextPendingLink() {
+        ArrayList<Intent> extra = getIntent().getParcelableArrayListExtra(EXTRA_PENDING_LINKS);
+        if (extra == null || extra.isEmpty()) {
+            return;
+        }
+        ArrayList<Intent> pendingLinks = new ArrayList<>(extra);
+        Intent next = new Intent(pendingLinks.remove(0))
+                .setComponent(new ComponentName(this, ResolverActivity.class));
+        if (!pendingLinks.isEmpty()) {
+            next.putParcelableArrayListExtra(EXTRA_PENDING_LINKS, pendingLinks);
         }
+        startActivity(next);
     }
 
 }
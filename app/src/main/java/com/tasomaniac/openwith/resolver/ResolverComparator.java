@@ -1,109 +1,82 @@
 package com.tasomaniac.openwith.resolver;
 
-import android.annotation.TargetApi;
-import android.app.usage.UsageStats;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.os.Build;
+import androidx.annotation.VisibleForTesting;
 import com.tasomaniac.openwith.util.Intents;
 
 import javax.annotation.Nullable;
+import java.text.CollationKey;
 import java.text.Collator;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 
-class ResolverComparator implements Comparator<ResolveInfo> {
+class ResolverComparator {
 
-    private final PackageManager packageManager;
     private final ChooserHistory history;
-    @Nullable private final Map<String, UsageStats> usageStatsMap;
+    @Nullable private final ChooserRanking ranking;
+    @Nullable private final UsageAggregate usageAggregate;
     private final Set<String> priorityPackages;
     private final Collator collator;
     private final boolean isHttp;
 
-    ResolverComparator(PackageManager packageManager,
-                       ChooserHistory history,
-                       @Nullable Map<String, UsageStats> usageStatsMap,
+    ResolverComparator(ChooserHistory history,
+                       @Nullable ChooserRanking ranking,
+                       @Nullable UsageAggregate usageAggregate,
                        Set<String> priorityPackages,
                        Intent sourceIntent) {
-        this.packageManager = packageManager;
         this.history = history;
-        this.usageStatsMap = usageStatsMap;
+        this.ranking = ranking;
+        this.usageAggregate = usageAggregate;
         this.priorityPackages = priorityPackages;
         this.collator = Collator.getInstance(Locale.getDefault());
         this.isHttp = Intents.isHttp(sourceIntent);
     }
 
-    @Override
-    public int compare(ResolveInfo lhs, ResolveInfo rhs) {
-
-        if (isHttp) {
-            // Special case: we want filters that match URI paths/schemes to be
-            // ordered before others.  This is for the case when opening URIs,
-            // to make native apps go above browsers.
-            final boolean lhsSpecific = isSpecificUriMatch(lhs.match);
-            final boolean rhsSpecific = isSpecificUriMatch(rhs.match);
-            if (lhsSpecific != rhsSpecific) {
-                return lhsSpecific ? -1 : 1;
-            }
-        }
-
-        if (history != null) {
-            int leftCount = history.get(lhs.activityInfo.packageName);
-            int rightCount = history.get(rhs.activityInfo.packageName);
-            if (leftCount != rightCount) {
-                return Integer.compare(rightCount, leftCount);
-            }
-        }
-
-        if (priorityPackages != null) {
-            boolean leftPriority = isPriority(lhs);
-            boolean rightPriority = isPriority(rhs);
-            if (leftPriority != rightPriority) {
-                return Boolean.compare(rightPriority, leftPriority);
-            }
-        }
-
-        if (usageStatsMap != null) {
-            final long timeDiff =
-                    getPackageTimeSpent(rhs.activityInfo.packageName) -
-                            getPackageTimeSpent(lhs.activityInfo.packageName);
-
-            if (timeDiff != 0) {
-                return timeDiff > 0 ? 1 : -1;
-            }
+    /**
+     * Sorts the list in place. Everything that is needed for ordering an item,
+     * including its label, is computed only once before the actual sort.
+     */
+    void sort(List<ResolveInfo> list, LabelTable labels) {
+        SortKey[] keys = sortKeysFor(list, labels);
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            list.set(i, keys[i].info);
         }
+    }
 
-        CharSequence sa = lhs.loadLabel(packageManager);
-        if (sa == null) {
-            sa = lhs.activityInfo.name;
+    @VisibleForTesting
+    SortKey[] sortKeysFor(List<ResolveInfo> list, LabelTable labels) {
+        SortKey[] keys = new SortKey[list.size()];
+        UsageTimes usageTimes = usageAggregate != null ? usageAggregate.times() : null;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = sortKeyFor(list.get(i), labels, usageTimes);
         }
-        CharSequence sb = rhs.loadLabel(packageManager);
-        if (sb == null) {
-            sb = rhs.activityInfo.name;
-        }
-
-        return collator.compare(sa.toString(), sb.toString());
+        return keys;
     }
 
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private long getPackageTimeSpent(String packageName) {
-        if (usageStatsMap != null) {
-            final UsageStats stats = usageStatsMap.get(packageName);
-            if (stats != null) {
-                return stats.getTotalTimeInForeground();
-            }
-
-        }
-        return 0;
+    private SortKey sortKeyFor(ResolveInfo info, LabelTable labels, @Nullable UsageTimes usageTimes) {
+        String packageName = info.activityInfo.packageName;
+        return new SortKey(
+                info,
+                isHttp && isSpecificUriMatch(info.match),
+                ranking != null ? ranking.scoreOf(packageName, info.activityInfo.name) : 0,
+                history != null ? history.get(packageName) : 0,
+                priorityPackages != null && priorityPackages.contains(packageName),
+                usageTimes != null ? usageTimes.timeSpentIn(packageName) : 0,
+                collator.getCollationKey(labelOf(info, labels).toString())
+        );
     }
 
-    private boolean isPriority(ResolveInfo lhs) {
-        return priorityPackages.contains(lhs.activityInfo.packageName);
+    private static CharSequence labelOf(ResolveInfo info, LabelTable labels) {
+        CharSequence label = labels.labelOf(info);
+        if (label == null) {
+            label = info.activityInfo.name;
+        }
+        return label;
     }
 
     private static boolean isSpecificUriMatch(int match) {
@@ -111,4 +84,57 @@ class ResolverComparator implements Comparator<ResolveInfo> {
         return match >= IntentFilter.MATCH_CATEGORY_HOST
                 && match <= IntentFilter.MATCH_CATEGORY_PATH;
     }
+
+    /**
+     * Everything an item is ordered by, in the order of importance.
+     */
+    static final class SortKey implements Comparable<SortKey> {
+
+        final ResolveInfo info;
+        private final boolean specificMatch;
+        private final double score;
+        private final int historyCount;
+        private final boolean priority;
+        private final long timeSpent;
+        private final CollationKey label;
+
+        SortKey(ResolveInfo info,
+                boolean specificMatch,
+                double score,
+                int historyCount,
+                boolean priority,
+                long timeSpent,
+                CollationKey label) {
+            this.info = info;
+            this.specificMatch = specificMatch;
+            this.score = score;
+            this.historyCount = historyCount;
+            this.priority = priority;
+            this.timeSpent = timeSpent;
+            this.label = label;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            // Special case: we want filters that match URI paths/schemes to be
+            // ordered before others.  This is for the case when opening URIs,
+            // to make native apps go above browsers.
+            if (specificMatch != other.specificMatch) {
+                return specificMatch ? -1 : 1;
+            }
+            if (score != other.score) {
+                return Double.compare(other.score, score);
+            }
+            if (historyCount != other.historyCount) {
+                return Integer.compare(other.historyCount, historyCount);
+            }
+            if (priority != other.priority) {
+                return Boolean.compare(other.priority, priority);
+            }
+            if (timeSpent != other.timeSpent) {
+                return Long.compare(other.timeSpent, timeSpent);
+            }
+            return label.compareTo(other.label);
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.tasomaniac.openwith.resolver
 
 import android.content.Intent
+import com.tasomaniac.openwith.PerActivity
 import dagger.Module
 import dagger.Provides
 
@@ -16,7 +17,15 @@ class ResolverInputModule {
     fun sourceIntent(activity: ResolverActivity): Intent {
         return Intent(activity.intent).apply {
             component = null
+            removeExtra(ResolverActivity.EXTRA_PENDING_LINKS)
+            removeExtra(ResolutionContextStore.EXTRA_RESOLUTION_TOKEN)
             flags = flags and Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS.inv()
         }
     }
+
+    @Provides
+    @PerActivity
+    fun resolutionContext(activity: ResolverActivity, store: ResolutionContextStore): ResolutionContext {
+        return store.contextOf(activity.intent)
+    }
 }
@@ -1,36 +1,23 @@
 package com.tasomaniac.openwith.resolver;
 
-import android.app.Application;
-import android.app.usage.UsageStats;
-import android.app.usage.UsageStatsManager;
-import android.content.Context;
 import android.content.Intent;
-import androidx.annotation.Nullable;
-import androidx.core.content.ContextCompat;
-import com.tasomaniac.openwith.PerActivity;
+import dagger.Binds;
 import dagger.Module;
 import dagger.Provides;
+import dagger.multibindings.IntoSet;
 
 import javax.inject.Provider;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
-import static android.os.Build.VERSION.SDK_INT;
-import static android.os.Build.VERSION_CODES.LOLLIPOP_MR1;
 import static com.tasomaniac.openwith.resolver.ResolverActivity.EXTRA_ADD_TO_HOME_SCREEN;
 
 @Module
 public abstract class ResolverModule {
 
-    private static final long USAGE_STATS_PERIOD = TimeUnit.DAYS.toMillis(14);
-
-    @Provides
-    @PerActivity
-    static ChooserHistory provideChooserHistory(Application app) {
-        return ChooserHistory.fromSettings(app);
-    }
+    @Binds
+    @IntoSet
+    abstract ExclusionProvider daydreamExclusions(DaydreamExclusions exclusions);
 
     @Provides
     static ResolverPresenter resolverPresenter(
@@ -45,28 +32,20 @@ public abstract class ResolverModule {
     }
 
     @Provides
-    static ResolverComparator provideResolverComparator(Application app, ChooserHistory history, Intent sourceIntent) {
+    static ResolverComparator provideResolverComparator(
+            ChooserHistory history,
+            ChooserRanking ranking,
+            UsageAggregate usageAggregate,
+            Intent sourceIntent) {
         return new ResolverComparator(
-                app.getPackageManager(),
                 history,
-                usageStatsFrom(app),
+                ranking,
+                usageAggregate,
                 new HashSet<>(Arrays.asList(PRIORITY_PACKAGES)),
                 sourceIntent
         );
     }
 
-    @Nullable private static Map<String, UsageStats> usageStatsFrom(Context context) {
-        if (SDK_INT >= LOLLIPOP_MR1) {
-            UsageStatsManager usageStatsManager = ContextCompat.getSystemService(context, UsageStatsManager.class);
-
-            final long sinceTime = System.currentTimeMillis() - USAGE_STATS_PERIOD;
-            if (usageStatsManager != null) {
-                return usageStatsManager.queryAndAggregateUsageStats(sinceTime, System.currentTimeMillis());
-            }
-        }
-        return null;
-    }
-
     private static final String[] PRIORITY_PACKAGES = new String[]{
             "com.whatsapp",
             "com.twitter.android",
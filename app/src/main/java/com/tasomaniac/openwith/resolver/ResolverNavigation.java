@@ -1,6 +1,5 @@
 package com.tasomaniac.openwith.resolver;
 
-import android.app.Activity;
 import android.content.Intent;
 import android.widget.Toast;
 import com.tasomaniac.openwith.BuildConfig;
@@ -12,7 +11,7 @@ import javax.inject.Inject;
 
 class ResolverNavigation implements ResolverView.Navigation {
 
-    private final Activity activity;
+    private final ResolverActivity activity;
 
     @Inject ResolverNavigation(ResolverActivity activity) {
         this.activity = activity;
@@ -49,8 +48,6 @@ class ResolverNavigation implements ResolverView.Navigation {
 
     @Override
     public void dismiss() {
-        if (!activity.isFinishing()) {
-            activity.finish();
-        }
+        activity.dismiss();
     }
 }
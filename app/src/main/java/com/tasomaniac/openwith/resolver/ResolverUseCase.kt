@@ -4,6 +4,8 @@ import android.content.Intent
 import android.net.Uri
 import com.tasomaniac.openwith.data.PreferredApp
 import com.tasomaniac.openwith.data.PreferredAppDao
+import com.tasomaniac.openwith.data.prefs.BooleanPreference
+import com.tasomaniac.openwith.data.prefs.StaleWhileRevalidate
 import com.tasomaniac.openwith.resolver.preferred.PreferredResolver
 import com.tasomaniac.openwith.rx.SchedulingStrategy
 import io.reactivex.Completable
@@ -17,8 +19,10 @@ internal class ResolverUseCase @Inject constructor(
     private val preferredResolver: PreferredResolver,
     private val intentResolver: IntentResolver,
     private val history: ChooserHistory,
+    private val ranking: ChooserRanking,
     private val dao: PreferredAppDao,
-    private val scheduling: SchedulingStrategy
+    private val scheduling: SchedulingStrategy,
+    @param:StaleWhileRevalidate private val staleWhileRevalidate: BooleanPreference
 ) {
 
     private var disposable: Disposable? = null
@@ -27,6 +31,10 @@ internal class ResolverUseCase @Inject constructor(
     fun bind(listener: Listener) {
         this.listener = listener
         val uri = sourceIntent.data!!
+        if (staleWhileRevalidate.get()) {
+            bindConcurrently(listener, uri)
+            return
+        }
         disposable = preferredResolver.resolve(uri)
             .compose(scheduling.forMaybe())
             .subscribe(
@@ -40,6 +48,18 @@ internal class ResolverUseCase @Inject constructor(
             )
     }
 
+    private fun bindConcurrently(listener: Listener, uri: Uri) {
+        val preferred = preferredResolver.resolve(uri).cache()
+        disposable = preferred
+            .compose(scheduling.forMaybe())
+            .subscribe({ (app, info) -> listener.onPreferredResolved(uri, app, info) }, Timber::e)
+        intentResolver.bind(
+            listener,
+            preferred.map { it.app.componentName },
+            launchedInstead = preferred.filter { it.app.preferred }
+        )
+    }
+
     fun unbind() {
         intentResolver.unbind()
     }
@@ -62,12 +82,13 @@ internal class ResolverUseCase @Inject constructor(
             preferred = alwaysCheck
         )
         Completable
-            .fromAction { dao.insert(preferredApp) }
+            .fromAction {
+                dao.insert(preferredApp)
+                history.add(component.packageName)
+                ranking.record(component.flattenToString())
+            }
             .compose(scheduling.forCompletable())
             .subscribe()
-
-        history.add(component.packageName)
-        history.save()
     }
 
     fun deleteFailedHost(uri: Uri) {
@@ -10,6 +10,12 @@ interface ResolverView {
 
     void displayData(IntentResolverResult result);
 
+    /**
+     * Updates the displayed items without inflating the layout again.
+     * Only valid when the result has the same shape as the one displayed.
+     */
+    void updateData(IntentResolverResult result);
+
     void setTitle(String title);
 
     void setupActionButtons();
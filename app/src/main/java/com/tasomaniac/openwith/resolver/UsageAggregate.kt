@@ -0,0 +1,156 @@
+package com.tasomaniac.openwith.resolver
+
+import android.app.Application
+import android.app.usage.UsageEvents
+import android.app.usage.UsageStatsManager
+import android.os.Build.VERSION.SDK_INT
+import android.os.Build.VERSION_CODES.LOLLIPOP_MR1
+import androidx.annotation.RequiresApi
+import androidx.annotation.VisibleForTesting
+import androidx.annotation.WorkerThread
+import androidx.core.content.getSystemService
+import com.tasomaniac.openwith.data.PackageUsage
+import com.tasomaniac.openwith.data.PackageUsageDao
+import com.tasomaniac.openwith.data.PackageUsageTotal
+import com.tasomaniac.openwith.data.prefs.LongPreference
+import com.tasomaniac.openwith.data.prefs.UsageCheckpoint
+import com.tasomaniac.openwith.rx.SchedulingStrategy
+import com.tasomaniac.openwith.settings.advanced.usage.UsageStats
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.HOURS
+import java.util.concurrent.atomic.AtomicBoolean
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Time spent in each package over the last [PERIOD_DAYS] days, kept in daily buckets in the [PackageUsageDao].
+ *
+ * Instead of aggregating the usage stats of the whole period each time the chooser is opened,
+ * only the usage events since the last checkpoint are added, in the background and at most once every hour.
+ */
+@Singleton
+class UsageAggregate(
+    private val app: Application,
+    private val dao: PackageUsageDao,
+    private val checkpoint: LongPreference,
+    private val scheduling: SchedulingStrategy,
+    private val clock: () -> Long
+) {
+
+    @Inject constructor(
+        app: Application,
+        dao: PackageUsageDao,
+        @UsageCheckpoint checkpoint: LongPreference,
+        scheduling: SchedulingStrategy
+    ) : this(app, dao, checkpoint, scheduling, System::currentTimeMillis)
+
+    @Volatile private var times: UsageTimes? = null
+    private val refreshing = AtomicBoolean()
+
+    /**
+     * @return the times as of the last refresh, starting the next one if they are older than an hour.
+     */
+    @WorkerThread
+    fun times(): UsageTimes {
+        val current = times ?: load().also { times = it }
+        if (SDK_INT >= LOLLIPOP_MR1 && clock() - checkpoint.get() > REFRESH_INTERVAL_MILLIS &&
+            refreshing.compareAndSet(false, true)
+        ) {
+            scheduling.runOnExecutor {
+                try {
+                    refresh()
+                } finally {
+                    refreshing.set(false)
+                }
+            }
+        }
+        return current
+    }
+
+    private fun load() = UsageTimes(dao.totalsSince(dayOf(clock()) - PERIOD_DAYS))
+
+    @RequiresApi(LOLLIPOP_MR1)
+    private fun refresh() {
+        val usageStatsManager = app.getSystemService<UsageStatsManager>()
+        if (usageStatsManager == null || !UsageStats.isEnabled(app)) return
+
+        val now = clock()
+        val windowStart = now - DAYS.toMillis(PERIOD_DAYS)
+        val from = maxOf(checkpoint.get(), windowStart)
+        val sessionsContinue = checkpoint.isSet() && checkpoint.get() >= windowStart
+        val events = usageStatsManager.queryEvents(from, now).foregroundEvents()
+        val usages = usagesOf(events, if (sessionsContinue) from else null, now)
+        dao.add(usages, deleteBeforeDay = dayOf(now) - PERIOD_DAYS)
+        checkpoint.set(now)
+        times = load()
+    }
+
+    @RequiresApi(LOLLIPOP_MR1)
+    private fun UsageEvents.foregroundEvents(): Sequence<ForegroundEvent> {
+        val event = UsageEvents.Event()
+        return generateSequence { if (getNextEvent(event)) event else null }
+            .filter {
+                it.eventType == UsageEvents.Event.MOVE_TO_FOREGROUND ||
+                    it.eventType == UsageEvents.Event.MOVE_TO_BACKGROUND
+            }
+            .map { ForegroundEvent(it.packageName, it.timeStamp, it.eventType == UsageEvents.Event.MOVE_TO_FOREGROUND) }
+    }
+
+    @VisibleForTesting
+    internal data class ForegroundEvent(val packageName: String, val timeStamp: Long, val foreground: Boolean)
+
+    companion object {
+        private const val PERIOD_DAYS = 14L
+        private val REFRESH_INTERVAL_MILLIS = HOURS.toMillis(1)
+
+        /**
+         * Foreground sessions which didn't end by [to] are counted until [to]. The next refresh counts the rest.
+         *
+         * @param sessionsStart where the sessions of packages which move to the background without
+         * moving to the foreground first started, or null if they aren't known and are not counted.
+         * Only a previous refresh which ended there tells that they were in the foreground since then.
+         */
+        @VisibleForTesting
+        internal fun usagesOf(events: Sequence<ForegroundEvent>, sessionsStart: Long?, to: Long): List<PackageUsage> {
+            val foregroundSince = HashMap<String, Long>()
+            val usages = HashMap<Pair<String, Long>, Long>()
+            fun addSession(packageName: String, start: Long, end: Long) {
+                val key = packageName to dayOf(end)
+                usages[key] = (usages[key] ?: 0L) + (end - start)
+            }
+
+            events.forEach { event ->
+                if (event.foreground) {
+                    if (event.packageName !in foregroundSince) foregroundSince[event.packageName] = event.timeStamp
+                } else {
+                    val start = foregroundSince.remove(event.packageName) ?: sessionsStart
+                    start?.let { addSession(event.packageName, it, event.timeStamp) }
+                }
+            }
+            foregroundSince.forEach { (packageName, start) -> addSession(packageName, start, to) }
+            return usages.map { (key, millis) -> PackageUsage(key.first, key.second, millis) }
+        }
+
+        private fun dayOf(millis: Long) = millis / DAYS.toMillis(1)
+    }
+}
+
+/**
+ * Foreground time of packages, in arrays sorted by package name.
+ */
+class UsageTimes(totals: List<PackageUsageTotal>) {
+
+    private val packageNames: Array<String>
+    private val foregroundMillis: LongArray
+
+    init {
+        val sorted = totals.sortedBy { it.packageName }
+        packageNames = Array(sorted.size) { sorted[it].packageName }
+        foregroundMillis = LongArray(sorted.size) { sorted[it].foregroundMillis }
+    }
+
+    fun timeSpentIn(packageName: String): Long {
+        val index = packageNames.binarySearch(packageName)
+        return if (index >= 0) foregroundMillis[index] else 0L
+    }
+}
@@ -12,7 +12,7 @@ import java.util.List;
 public class Intents {
 
     private static final Intents.Fixer[] INTENT_FIXERS = new Intents.Fixer[]{
-            new AmazonFixer(),
+            new RuleFixer(),
     };
 
     public static void restartSettings(Context context) {
@@ -58,28 +58,28 @@ public class Intents {
         return !handlers.isEmpty();
     }
 
-    private static class AmazonFixer implements Fixer {
+    private static class RuleFixer implements Fixer {
 
         /**
-         * If link contains amazon and it has ASIN in it, create a specific intent to open Amazon App.
+         * If an intent rule matches the link, create the intent it describes to open the app of the site.
          *
-         * @param intent Original Intent with amazon link in it.
-         * @return Specific Intent for Amazon app.
+         * @param intent Original Intent with the link in it.
+         * @return Specific Intent for the app of the site.
          */
         @Override
         public Intent fix(Context context, Intent intent) {
-            if (intent.getDataString() != null && intent.getDataString().contains("amazon")) {
-                String asin = Urls.AmazonFixer.extractAmazonASIN(intent.getDataString());
-                if (asin != null) {
-                    if ("0000000000".equals(asin)) {
-                        return context.getPackageManager()
-                                .getLaunchIntentForPackage(intent.getComponent().getPackageName());
-                    }
-                    return new Intent(Intent.ACTION_VIEW).setDataAndType(
-                            Uri.parse("mshop://featured?ASIN=" + asin),
-                            "vnd.android.cursor.item/vnd.amazon.mShop.featured"
-                    );
-                }
+            String url = intent.getDataString();
+            if (url == null) {
+                return intent;
+            }
+            UrlRules.IntentTarget target = UrlRules.get(context).intentTargetFor(url);
+            if (target instanceof UrlRules.IntentTarget.View) {
+                UrlRules.IntentTarget.View view = (UrlRules.IntentTarget.View) target;
+                return new Intent(Intent.ACTION_VIEW).setDataAndType(Uri.parse(view.getUri()), view.getMimeType());
+            }
+            if (target == UrlRules.IntentTarget.Launch.INSTANCE) {
+                return context.getPackageManager()
+                        .getLaunchIntentForPackage(intent.getComponent().getPackageName());
             }
             return intent;
         }
@@ -0,0 +1,242 @@
+package com.tasomaniac.openwith.util
+
+import android.content.Context
+import java.io.FileInputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.Locale
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
+/**
+ * Url rules compiled at build time from `src/main/rules/url_rules.txt`.
+ *
+ * The rules are read straight from the memory-mapped file. Only the rules registered
+ * for the host of a url, or one of its parent domains, run for it, and their patterns
+ * are compiled the first time they are used.
+ */
+class UrlRules(private val buffer: ByteBuffer) {
+
+    private val stringsOffset: Int
+    private val rulesOffset: Int
+    private val hostsOffset: Int
+    private val strings: Array<String?>
+    private val patterns: Array<Pattern?>
+
+    init {
+        require(buffer.getInt(0) == MAGIC) { "Not a url rules file" }
+        require(buffer.getInt(4) == FORMAT_VERSION) { "Unsupported url rules format ${buffer.getInt(4)}" }
+        stringsOffset = buffer.getInt(STRINGS_OFFSET_POSITION)
+        rulesOffset = buffer.getInt(RULES_OFFSET_POSITION)
+        hostsOffset = buffer.getInt(HOSTS_OFFSET_POSITION)
+        strings = arrayOfNulls(buffer.getInt(stringsOffset))
+        patterns = arrayOfNulls(strings.size)
+    }
+
+    /**
+     * Version declared in the rules file.
+     */
+    val version get() = buffer.getInt(VERSION_POSITION)
+
+    fun rewrite(url: String): String {
+        var rewritten = url
+        forEachRuleOf(url, KIND_URL) { rule ->
+            rewritten = applyUrlRule(rule, rewritten)
+            false
+        }
+        return rewritten
+    }
+
+    /**
+     * @return what should be started instead of viewing the [url], if any.
+     */
+    fun intentTargetFor(url: String): IntentTarget? {
+        var target: IntentTarget? = null
+        forEachRuleOf(url, KIND_INTENT) { rule ->
+            target = applyIntentRule(rule, url)
+            target != null
+        }
+        return target
+    }
+
+    /**
+     * Runs the [action] for the rules of the [kind] until it returns true.
+     */
+    private inline fun forEachRuleOf(url: String, kind: Int, action: (rule: Int) -> Boolean) {
+        val host = hostOf(url) ?: return
+        var domainStart = 0
+        while (domainStart >= 0) {
+            val rules = ruleListOf(host.substring(domainStart))
+            for (i in 0 until if (rules < 0) 0 else buffer.getInt(rules)) {
+                val rule = ruleOffset(buffer.getInt(rules + INT_SIZE * (i + 1)))
+                if (buffer.get(rule).toInt() == kind && action(rule)) return
+            }
+            domainStart = host.indexOf('.', domainStart).let { if (it < 0) it else it + 1 }
+        }
+    }
+
+    /**
+     * @return the offset of the rule list of the [domain], or -1 if it has no rules.
+     */
+    private fun ruleListOf(domain: String): Int {
+        val hash = domain.hashCode()
+        val mask = buffer.getInt(hostsOffset) - 1
+        var slot = hash and mask
+        while (true) {
+            val position = hostsOffset + INT_SIZE + slot * SLOT_SIZE
+            val domainIndex = buffer.getInt(position + INT_SIZE)
+            if (domainIndex < 0) return -1
+            if (buffer.getInt(position) == hash && string(domainIndex) == domain) {
+                return buffer.getInt(position + 2 * INT_SIZE)
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+
+    private fun applyUrlRule(rule: Int, url: String): String {
+        var current = url
+        var position = rule + 2
+        repeat(buffer.get(rule + 1).toInt()) {
+            val code = buffer.get(position).toInt()
+            val args = IntArray(buffer.get(position + 1).toInt()) { buffer.getInt(position + 2 + it * INT_SIZE) }
+            position += 2 + args.size * INT_SIZE
+            val step = applyUrlOp(code, args, current)
+            if (step == null || step !== current && code != OP_REPLACE) return step ?: current
+            current = step
+        }
+        return current
+    }
+
+    /**
+     * @return the url after the op, or null when the rule should stop without changing it.
+     * A new url from a rewrite op stops the rule as well.
+     */
+    private fun applyUrlOp(code: Int, args: IntArray, url: String): String? = when (code) {
+        OP_SKIP_IF_FIND -> if (pattern(args[0]).matcher(url).find()) null else url
+        OP_REPLACE -> url.replace(string(args[0]), string(args[1]))
+        OP_REWRITE_IF_FIND -> pattern(args[0]).matcher(url).takeIf { it.find() }?.expand(string(args[1])) ?: url
+        OP_REWRITE_IF_MATCH -> pattern(args[0]).matcher(url).takeIf { it.matches() }?.expand(string(args[1])) ?: url
+        else -> url
+    }
+
+    private fun applyIntentRule(rule: Int, url: String): IntentTarget? {
+        var position = rule + 2
+        repeat(buffer.get(rule + 1).toInt()) {
+            val code = buffer.get(position).toInt()
+            val args = IntArray(buffer.get(position + 1).toInt()) { buffer.getInt(position + 2 + it * INT_SIZE) }
+            position += 2 + args.size * INT_SIZE
+            val matcher = pattern(args[0]).matcher(url)
+            if (matcher.find()) {
+                val target = when (code) {
+                    OP_VIEW_IF_FIND -> matcher.expand(string(args[1]))?.let { IntentTarget.View(it, string(args[2])) }
+                    OP_LAUNCH_IF_FIND -> IntentTarget.Launch
+                    else -> null
+                }
+                if (target != null) return target
+            }
+        }
+        return null
+    }
+
+    private fun ruleOffset(index: Int) = buffer.getInt(rulesOffset + INT_SIZE * (index + 1))
+
+    private fun string(index: Int): String = strings[index] ?: readString(index).also { strings[index] = it }
+
+    private fun readString(index: Int): String {
+        val position = buffer.getInt(stringsOffset + INT_SIZE * (index + 1))
+        val bytes = ByteArray(buffer.getInt(position))
+        for (i in bytes.indices) {
+            bytes[i] = buffer.get(position + INT_SIZE + i)
+        }
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    private fun pattern(index: Int): Pattern =
+        patterns[index] ?: Pattern.compile(string(index)).also { patterns[index] = it }
+
+    /**
+     * Fills the groups of the matcher into the [template], or null if one of them didn't match.
+     */
+    private fun Matcher.expand(template: String): String? {
+        val result = StringBuilder(template.length)
+        var i = 0
+        while (i < template.length) {
+            val c = template[i]
+            if (c == '$' && i + 1 < template.length && template[i + 1].isDigit()) {
+                result.append(group(template[i + 1] - '0') ?: return null)
+                i += 2
+            } else {
+                result.append(c)
+                i++
+            }
+        }
+        return result.toString()
+    }
+
+    sealed class IntentTarget {
+
+        data class View(val uri: String, val mimeType: String) : IntentTarget()
+
+        /**
+         * Launch the app instead of viewing the url in it.
+         */
+        object Launch : IntentTarget()
+    }
+
+    companion object {
+
+        const val ASSET = "url_rules.bin"
+
+        // Keep in sync with UrlRulesCompiler in buildSrc.
+        private const val MAGIC = 0x4F4C5752
+        private const val FORMAT_VERSION = 1
+        private const val VERSION_POSITION = 8
+        private const val STRINGS_OFFSET_POSITION = 12
+        private const val RULES_OFFSET_POSITION = 16
+        private const val HOSTS_OFFSET_POSITION = 20
+        private const val KIND_URL = 0
+        private const val KIND_INTENT = 1
+        private const val OP_SKIP_IF_FIND = 1
+        private const val OP_REPLACE = 2
+        private const val OP_REWRITE_IF_FIND = 3
+        private const val OP_REWRITE_IF_MATCH = 4
+        private const val OP_VIEW_IF_FIND = 5
+        private const val OP_LAUNCH_IF_FIND = 6
+        private const val INT_SIZE = 4
+        private const val SLOT_SIZE = 3 * INT_SIZE
+        private val HOST_TERMINATORS = charArrayOf('/', '?', '#', ':')
+
+        @Volatile private var instance: UrlRules? = null
+
+        /**
+         * Memory-maps the rules asset the first time it is needed.
+         */
+        @JvmStatic
+        fun get(context: Context): UrlRules = instance ?: synchronized(this) {
+            instance ?: UrlRules(map(context)).also { instance = it }
+        }
+
+        private fun map(context: Context): ByteBuffer =
+            context.applicationContext.assets.openFd(ASSET).use { fd ->
+                FileInputStream(fd.fileDescriptor).channel.use { channel ->
+                    channel.map(FileChannel.MapMode.READ_ONLY, fd.startOffset, fd.declaredLength)
+                }
+            }
+
+        /**
+         * @return the host of the [url], which may not have a scheme, or null if there is none.
+         */
+        @JvmStatic
+        fun hostOf(url: String): String? {
+            val schemeEnd = url.indexOf("://")
+            val start = if (schemeEnd < 0) 0 else schemeEnd + "://".length
+            var end = start
+            while (end < url.length && url[end] !in HOST_TERMINATORS) {
+                end++
+            }
+            val authority = url.substring(start, end)
+            val host = authority.substring(authority.lastIndexOf('@') + 1)
+            return if (host.isEmpty()) null else host.toLowerCase(Locale.US)
+        }
+    }
+}
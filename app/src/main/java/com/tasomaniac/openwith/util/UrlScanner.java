@@ -0,0 +1,281 @@
+package com.tasomaniac.openwith.util;
+
+/**
+ * Finds the urls in a text in a single pass, matching what the url regex below used to find.
+ * <pre>
+ * \b((?:[a-z][\w-]+:(?:/{1,3}|[a-z0-9%])|www\d{0,3}[.]|[a-z0-9.\-]+[.][a-z]{2,4}/)
+ *   (?:[^\s()<>]+|\(([^\s()<>]+|(\([^\s()<>]+\)))*\))+
+ *   (?:\(([^\s()<>]+|(\([^\s()<>]+\)))*\)|[^\s`!()\[\]{};:'".,<>?«»“”‘’]))
+ * </pre>
+ * The regex backtracks exponentially on long runs of punctuation after a url prefix. The scanner
+ * instead remembers the runs it has already scanned, so each character is looked at a bounded
+ * number of times and nothing is allocated until a url is found.
+ */
+public final class UrlScanner {
+
+    private static final String NOT_AT_END = "`!()[]{};:'\".,<>?«»“”‘’";
+
+    private final CharSequence text;
+    private final int length;
+
+    private int start = -1;
+    private int end = 0;
+
+    private int schemeRunStart = -1;
+    private int schemeRunEnd = -1;
+    private int domainRunStart = -1;
+    private int domainRunEnd = -1;
+    private int domainRunLastDot = -1;
+
+    /**
+     * A body starting at {@code failedBodyStart}, or anywhere in {@code [failedFrom, failedTo]},
+     * has no position a url can end at.
+     */
+    private int failedBodyStart = -1;
+    private int failedFrom = -1;
+    private int failedTo = -1;
+
+    public UrlScanner(CharSequence text) {
+        this.text = text;
+        this.length = text.length();
+    }
+
+    /**
+     * Finds the next url after the previous one, like {@link java.util.regex.Matcher#find()}.
+     */
+    public boolean find() {
+        for (int i = end; i < length; i++) {
+            if (matchAt(i)) {
+                return true;
+            }
+        }
+        start = -1;
+        end = length;
+        return false;
+    }
+
+    public int start() {
+        checkMatch();
+        return start;
+    }
+
+    public int end() {
+        checkMatch();
+        return end;
+    }
+
+    public String group() {
+        checkMatch();
+        return text.subSequence(start, end).toString();
+    }
+
+    private void checkMatch() {
+        if (start < 0) {
+            throw new IllegalStateException("No match found");
+        }
+    }
+
+    private boolean matchAt(int i) {
+        if (!isWordBoundary(i)) {
+            return false;
+        }
+        return matchScheme(i) || matchWww(i) || matchDomain(i);
+    }
+
+    /**
+     * {@code [a-z][\w-]+:(?:/{1,3}|[a-z0-9%])}
+     */
+    private boolean matchScheme(int i) {
+        if (!isAsciiLetter(text.charAt(i))) {
+            return false;
+        }
+        if (i < schemeRunStart || i >= schemeRunEnd) {
+            schemeRunStart = i;
+            schemeRunEnd = i + 1;
+            while (schemeRunEnd < length && isSchemeChar(text.charAt(schemeRunEnd))) {
+                schemeRunEnd++;
+            }
+        }
+        int colon = schemeRunEnd;
+        if (colon < i + 2 || colon >= length || text.charAt(colon) != ':') {
+            return false;
+        }
+        int slashes = 0;
+        while (slashes < 3 && colon + 1 + slashes < length && text.charAt(colon + 1 + slashes) == '/') {
+            slashes++;
+        }
+        for (int count = slashes; count > 0; count--) {
+            if (matchBody(i, colon + 1 + count)) {
+                return true;
+            }
+        }
+        return slashes == 0 && colon + 1 < length && isSchemeSpecificStart(text.charAt(colon + 1))
+                && matchBody(i, colon + 2);
+    }
+
+    /**
+     * {@code www\d{0,3}[.]}
+     */
+    private boolean matchWww(int i) {
+        if (i + 3 > length) {
+            return false;
+        }
+        for (int k = i; k < i + 3; k++) {
+            if ((text.charAt(k) | 0x20) != 'w') {
+                return false;
+            }
+        }
+        int dot = i + 3;
+        while (dot < length && dot < i + 7 && isDigit(text.charAt(dot))) {
+            dot++;
+        }
+        return dot < length && dot <= i + 6 && text.charAt(dot) == '.' && matchBody(i, dot + 1);
+    }
+
+    /**
+     * {@code [a-z0-9.\-]+[.][a-z]{2,4}/}
+     */
+    private boolean matchDomain(int i) {
+        if (!isDomainChar(text.charAt(i))) {
+            return false;
+        }
+        if (i < domainRunStart || i >= domainRunEnd) {
+            domainRunStart = i;
+            domainRunEnd = i;
+            domainRunLastDot = -1;
+            while (domainRunEnd < length && isDomainChar(text.charAt(domainRunEnd))) {
+                if (text.charAt(domainRunEnd) == '.') {
+                    domainRunLastDot = domainRunEnd;
+                }
+                domainRunEnd++;
+            }
+        }
+        int slash = domainRunEnd;
+        int tldLength = slash - domainRunLastDot - 1;
+        if (domainRunLastDot <= i || tldLength < 2 || tldLength > 4 || slash >= length || text.charAt(slash) != '/') {
+            return false;
+        }
+        for (int k = domainRunLastDot + 1; k < slash; k++) {
+            if (!isAsciiLetter(text.charAt(k))) {
+                return false;
+            }
+        }
+        return matchBody(i, slash + 1);
+    }
+
+    /**
+     * The rest of the url is a run of characters and balanced parentheses, ending at the last
+     * parenthesis or at the last character which isn't punctuation.
+     */
+    private boolean matchBody(int urlStart, int bodyStart) {
+        if (bodyStart == failedBodyStart || (bodyStart >= failedFrom && bodyStart <= failedTo)) {
+            return false;
+        }
+        int urlEnd = -1;
+        int firstUnitEnd = -1;
+        int p = bodyStart;
+        while (p < length) {
+            if (p == failedFrom) {
+                p = failedTo;
+                break;
+            }
+            char c = text.charAt(p);
+            if (c == '(') {
+                int groupEnd = groupEnd(p);
+                if (groupEnd < 0) {
+                    break;
+                }
+                if (p > bodyStart) {
+                    urlEnd = groupEnd;
+                }
+                p = groupEnd;
+            } else if (isRunChar(c)) {
+                if (p > bodyStart && NOT_AT_END.indexOf(c) < 0) {
+                    urlEnd = p + 1;
+                }
+                p++;
+            } else {
+                break;
+            }
+            if (firstUnitEnd < 0) {
+                firstUnitEnd = p;
+            }
+        }
+        if (urlEnd < 0) {
+            failedBodyStart = bodyStart;
+            failedFrom = firstUnitEnd < 0 ? bodyStart : firstUnitEnd;
+            failedTo = p;
+            return false;
+        }
+        start = urlStart;
+        end = urlEnd;
+        return true;
+    }
+
+    /**
+     * {@code \(([^\s()<>]+|(\([^\s()<>]+\)))*\)}
+     *
+     * @return the index after the closing parenthesis, or -1 if the parentheses at {@code open} aren't balanced.
+     */
+    private int groupEnd(int open) {
+        int p = open + 1;
+        while (p < length) {
+            char c = text.charAt(p);
+            if (c == ')') {
+                return p + 1;
+            } else if (c == '(') {
+                int inner = p + 1;
+                while (inner < length && isRunChar(text.charAt(inner))) {
+                    inner++;
+                }
+                if (inner == p + 1 || inner >= length || text.charAt(inner) != ')') {
+                    return -1;
+                }
+                p = inner + 1;
+            } else if (isRunChar(c)) {
+                p++;
+            } else {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isWordBoundary(int i) {
+        boolean before = i > 0 && isWordChar(Character.codePointBefore(text, i));
+        boolean after = isWordChar(Character.codePointAt(text, i));
+        return before != after;
+    }
+
+    private static boolean isWordChar(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    private static boolean isRunChar(char c) {
+        return !isWhitespace(c) && c != '(' && c != ')' && c != '<' && c != '>';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isSchemeChar(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '_' || c == '-';
+    }
+
+    private static boolean isSchemeSpecificStart(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '%';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return isAsciiLetter(c) || isDigit(c) || c == '.' || c == '-';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
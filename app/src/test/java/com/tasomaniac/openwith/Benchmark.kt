@@ -0,0 +1,9 @@
+package com.tasomaniac.openwith
+
+/**
+ * JUnit category of the tests which only measure and print timings.
+ *
+ * They are left out of the unit tests, and run when the `benchmark` property is set,
+ * e.g. `./gradlew testPlayDebugUnitTest -Pbenchmark`.
+ */
+interface Benchmark
@@ -0,0 +1,23 @@
+package com.tasomaniac.openwith.homescreen
+
+import com.tasomaniac.openwith.data.PageMetadata
+import com.tasomaniac.openwith.data.PageMetadataDao
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.LinkedBlockingQueue
+
+class InMemoryPageMetadataDao : PageMetadataDao {
+
+    private val metadata = ConcurrentHashMap<String, PageMetadata>()
+    val inserted = LinkedBlockingQueue<PageMetadata>()
+
+    override fun metadataOf(url: String) = metadata[url]
+
+    override fun insert(metadata: PageMetadata) {
+        this.metadata[metadata.url] = metadata
+        inserted.add(metadata)
+    }
+
+    override fun deleteFetchedBefore(fetchedBefore: Long) {
+        metadata.values.removeAll { it.fetchedAt < fetchedBefore }
+    }
+}
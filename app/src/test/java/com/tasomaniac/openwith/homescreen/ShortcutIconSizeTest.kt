@@ -0,0 +1,20 @@
+package com.tasomaniac.openwith.homescreen
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ShortcutIconSizeTest {
+
+    @Test
+    fun givenLauncherSizeShouldKeepIt() {
+        assertEquals(192, ShortcutIconSize.boundedSize(192))
+    }
+
+    @Test
+    fun givenHugeLauncherSizeShouldStayBelowTransactionLimit() {
+        val size = ShortcutIconSize.boundedSize(4096)
+
+        assertTrue(size * size * 4 <= ShortcutIconSize.MAX_ICON_BYTES)
+    }
+}
@@ -0,0 +1,22 @@
+package com.tasomaniac.openwith.homescreen
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class SiteIconFetcherTest {
+
+    @Test
+    fun givenSmallIconShouldNotSubsample() {
+        assertEquals(1, SiteIconFetcher.sampleSizeFor(32, 32, ICON_SIZE))
+    }
+
+    @Test
+    fun givenLargeImageShouldKeepBothSidesAtLeastIconSize() {
+        assertEquals(4, SiteIconFetcher.sampleSizeFor(1200, 630, ICON_SIZE))
+        assertEquals(8, SiteIconFetcher.sampleSizeFor(1536, 1536, ICON_SIZE))
+    }
+
+    companion object {
+        private const val ICON_SIZE = 144
+    }
+}
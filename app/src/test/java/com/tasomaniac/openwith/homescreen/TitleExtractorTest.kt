@@ -0,0 +1,149 @@
+package com.tasomaniac.openwith.homescreen
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okio.Buffer
+import okio.ForwardingSource
+import okio.Okio
+import okio.Source
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+
+class TitleExtractorTest {
+
+    @Rule @JvmField val server = MockWebServer()
+
+    private val client = OkHttpClient()
+    private val titleExtractor = TitleExtractor(MAX_BYTES)
+    private var bytesRead = 0L
+
+    @Test
+    fun givenTitleShouldExtractIt() {
+        givenPage("<html><head><title>Open Link With</title></head><body></body></html>")
+
+        assertEquals("Open Link With", extractTitle())
+    }
+
+    @Test
+    fun givenTitleAfterNonMatchingLinesShouldExtractIt() {
+        givenPage("<!DOCTYPE html>\n<html lang=\"en\">\n<head>\n<meta charset=\"utf-8\">\n<title>Lines</title>")
+
+        assertEquals("Lines", extractTitle())
+    }
+
+    @Test
+    fun givenTitleSplitAcrossLinesShouldJoinIt() {
+        givenPage("<head><TITLE class=\"x\">\n  Split\n  across\n lines\n</Title></head>")
+
+        assertEquals("Split across lines", extractTitle())
+    }
+
+    @Test
+    fun givenEntitiesShouldDecodeThem() {
+        givenPage("<title>Tom &amp; Jerry &#8211; &quot;Cartoons&quot; &#x2764; &unknown;</title>")
+
+        assertEquals("Tom & Jerry – \"Cartoons\" ❤ &unknown;", extractTitle())
+    }
+
+    @Test
+    fun givenOgTitleShouldExtractIt() {
+        givenPage("<head><meta content=\"Fish &amp; Chips\" property='og:title' /></head>")
+
+        assertEquals("Fish & Chips", extractTitle())
+    }
+
+    @Test
+    fun givenEmptyTitleShouldFallBackToOgTitle() {
+        givenPage("<head><title> </title><meta property=\"og:title\" content=\"Og\"></head>")
+
+        assertEquals("Og", extractTitle())
+    }
+
+    @Test
+    fun givenIconLinkShouldExtractHead() {
+        givenPage("<head><link rel=\"Shortcut Icon\" href=\"/favicon.ico\"><title>Head</title></head>")
+
+        assertEquals(PageHead("Head", null, "/favicon.ico", null), extractHead())
+    }
+
+    @Test
+    fun givenTouchIconAfterFaviconShouldPreferTouchIcon() {
+        givenPage(
+            "<head><link rel=icon href=/favicon.ico><meta property=og:image content=/og.png>" +
+                "<link rel=apple-touch-icon href=/touch.png><link rel=icon href=/other.ico></head>"
+        )
+
+        assertEquals(PageHead(null, null, "/touch.png", "/og.png"), extractHead())
+    }
+
+    @Test
+    fun givenTitleInScriptOrCommentShouldIgnoreIt() {
+        givenPage(
+            "<head><script>var t = '<title>Script</title>';</script>" +
+                "<!-- <title>Comment</title> --><title>Real</title></head>"
+        )
+
+        assertEquals("Real", extractTitle())
+    }
+
+    @Test
+    fun givenTitleAfterHeadShouldStopAtHead() {
+        givenPage("<head></head><body>" + "<p>text</p>".repeat(100_000) + "<title>Late</title></body>")
+
+        assertNull(extractTitle())
+        assertTrue(bytesRead < MAX_BYTES)
+    }
+
+    @Test(timeout = 10_000)
+    fun givenHugeHeadWithoutTitleShouldStopAtByteBudget() {
+        givenPage("<head><script>" + "x".repeat(20 * 1024 * 1024) + "</script><title>Late</title>")
+
+        assertNull(extractTitle())
+        assertTrue(bytesRead < MAX_BYTES + BUFFER_SLACK)
+    }
+
+    @Test(timeout = 10_000)
+    fun givenHugeSingleLineWithoutTagsShouldStopAtByteBudget() {
+        givenPage("a".repeat(20 * 1024 * 1024))
+
+        assertNull(extractTitle())
+        assertTrue(bytesRead < MAX_BYTES + BUFFER_SLACK)
+    }
+
+    @Test
+    fun givenUnterminatedTitleShouldReturnNull() {
+        givenPage("<head><title>" + "Never ending ".repeat(10_000))
+
+        assertNull(extractTitle())
+    }
+
+    private fun givenPage(html: String) {
+        server.enqueue(MockResponse().setBody(Buffer().writeUtf8(html)))
+    }
+
+    private fun extractTitle(): String? = extractHead().displayTitle
+
+    private fun extractHead(): PageHead {
+        val request = Request.Builder().url(server.url("/")).build()
+        client.newCall(request).execute().body()!!.use { body ->
+            val source = Okio.buffer(CountingSource(body.source()))
+            return titleExtractor.extractHead(source)
+        }
+    }
+
+    private inner class CountingSource(delegate: Source) : ForwardingSource(delegate) {
+        override fun read(sink: Buffer, byteCount: Long): Long {
+            return super.read(sink, byteCount).also { if (it > 0) bytesRead += it }
+        }
+    }
+
+    companion object {
+        private const val MAX_BYTES = 64L * 1024
+        private const val BUFFER_SLACK = 64L * 1024
+    }
+}
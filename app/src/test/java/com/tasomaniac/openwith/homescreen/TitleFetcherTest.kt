@@ -0,0 +1,96 @@
+package com.tasomaniac.openwith.homescreen
+
+import com.tasomaniac.openwith.data.PageMetadata
+import com.tasomaniac.openwith.rx.ImmediateScheduling
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit.MINUTES
+import java.util.concurrent.TimeUnit.SECONDS
+
+class TitleFetcherTest {
+
+    @Rule @JvmField val server = MockWebServer()
+
+    private var now = MINUTES.toMillis(60)
+    private val pageMetadataDao = InMemoryPageMetadataDao()
+    private val titleFetcher =
+        TitleFetcher(OkHttpClient(), pageMetadataDao, ImmediateScheduling(), TitleExtractor()) { now }
+    private val titles = LinkedBlockingQueue<String>()
+
+    @Test
+    fun givenNoCacheShouldFetchAndStoreMetadata() {
+        server.enqueue(
+            MockResponse()
+                .setHeader("ETag", "\"v1\"")
+                .setBody("<head><link rel=icon href=/favicon.ico><title>Fetched</title></head>")
+        )
+
+        fetch()
+
+        assertEquals("Fetched", nextTitle())
+        val stored = pageMetadataDao.inserted.poll(5, SECONDS)
+        assertEquals("\"v1\"", stored.etag)
+        assertEquals(server.url("/favicon.ico").toString(), stored.faviconUrl)
+    }
+
+    @Test
+    fun givenFreshCacheShouldNotHitTheNetwork() {
+        givenCached(fetchedAt = now - MINUTES.toMillis(1))
+
+        fetch()
+
+        assertEquals("Cached", titles.poll())
+        assertEquals(0, server.requestCount)
+    }
+
+    @Test
+    fun givenStaleCacheShouldRevalidateWithValidators() {
+        givenCached(fetchedAt = now - MINUTES.toMillis(60))
+        server.enqueue(MockResponse().setResponseCode(304))
+
+        fetch()
+
+        assertEquals("Cached", titles.poll())
+        val request = server.takeRequest()
+        assertEquals("\"v1\"", request.getHeader("If-None-Match"))
+        assertEquals(LAST_MODIFIED, request.getHeader("If-Modified-Since"))
+        assertEquals(now, pageMetadataDao.inserted.poll(5, SECONDS).fetchedAt)
+        assertNull(titles.poll())
+    }
+
+    @Test
+    fun givenChangedPageShouldGiveTheNewTitle() {
+        givenCached(fetchedAt = now - MINUTES.toMillis(60))
+        server.enqueue(MockResponse().setBody("<title>Changed</title>"))
+
+        fetch()
+
+        assertEquals("Cached", titles.poll())
+        assertEquals("Changed", nextTitle())
+    }
+
+    private fun givenCached(fetchedAt: Long) {
+        pageMetadataDao.insert(
+            PageMetadata(url(), "Cached", null, null, "\"v1\"", LAST_MODIFIED, fetchedAt)
+        )
+        pageMetadataDao.inserted.clear()
+    }
+
+    private fun fetch() {
+        titleFetcher.fetch(url(), { titles.add(it.displayTitle.orEmpty()) }, { })
+    }
+
+    private fun nextTitle() = titles.poll(5, SECONDS)
+
+    private fun url() = server.url("/").toString()
+
+    companion object {
+        private const val LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT"
+    }
+}
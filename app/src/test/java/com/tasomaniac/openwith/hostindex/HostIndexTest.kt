@@ -0,0 +1,120 @@
+package com.tasomaniac.openwith.hostindex
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+
+class HostIndexTest {
+
+    private val index = HostIndex.of(
+        listOf(
+            HostFilter("www.youtube.com", "", YOUTUBE),
+            HostFilter("m.youtube.com", "", YOUTUBE),
+            HostFilter("*.twitter.com", "", TWITTER),
+            HostFilter("twitter.com", "", TWITTER),
+            HostFilter("www.google.com", "/maps", MAPS),
+            HostFilter("www.google.com", "", CHROME)
+        ),
+        listOf("com.android.chrome")
+    )
+
+    @Test
+    fun givenHostShouldFindItsHandlers() {
+        assertEquals(setOf(YOUTUBE), index.handlersOf("www.youtube.com", "/watch"))
+    }
+
+    @Test
+    fun givenSubdomainShouldMatchWildcardHost() {
+        assertEquals(setOf(TWITTER), index.handlersOf("mobile.twitter.com", "/"))
+        assertEquals(setOf(TWITTER), index.handlersOf("Twitter.com", "/"))
+    }
+
+    @Test
+    fun givenPathShouldMatchPathPrefixes() {
+        assertEquals(setOf(MAPS, CHROME), index.handlersOf("www.google.com", "/maps/place"))
+        assertEquals(setOf(CHROME), index.handlersOf("www.google.com", "/search"))
+    }
+
+    @Test
+    fun givenAnyHostFilterShouldMatchEveryHost() {
+        val withDownloader = index.updated(
+            "com.downloader",
+            PackageFilters(listOf(HostFilter("*", "", DOWNLOADER)), isBrowser = false)
+        )
+
+        assertEquals(setOf(YOUTUBE, DOWNLOADER), withDownloader.handlersOf("www.youtube.com", "/watch"))
+        assertFalse(withDownloader.hasOnlyBrowsers("example.com", "/"))
+    }
+
+    @Test
+    fun givenPathsMatchedBySameFiltersShouldHaveSamePathClass() {
+        assertEquals("/maps", index.pathClassOf("www.google.com", "/maps/place"))
+        assertEquals("/maps", index.pathClassOf("www.google.com", "/maps/dir"))
+        assertEquals("", index.pathClassOf("www.google.com", "/search"))
+        assertEquals("", index.pathClassOf("example.com", "/"))
+    }
+
+    @Test
+    fun givenInexactFilterOfHostShouldHaveNoPathClass() {
+        val updated = index.updated(
+            "com.google.android.googlequicksearchbox",
+            PackageFilters(listOf(HostFilter("www.google.com", "/search", SEARCH, exact = false)), isBrowser = false)
+        )
+
+        assertEquals(null, updated.pathClassOf("www.google.com", "/maps/place"))
+        assertEquals("", updated.pathClassOf("www.youtube.com", "/watch"))
+    }
+
+    @Test
+    fun givenHandlersAreBrowsersShouldHaveOnlyBrowsers() {
+        assertTrue(index.hasOnlyBrowsers("www.google.com", "/search"))
+        assertTrue(index.hasOnlyBrowsers("example.com", "/"))
+        assertFalse(index.hasOnlyBrowsers("www.google.com", "/maps"))
+    }
+
+    @Test
+    fun givenPackageRemovedShouldDropItsFilters() {
+        val updated = index.updated("com.google.android.youtube", null)
+
+        assertTrue(updated.hasOnlyBrowsers("www.youtube.com", "/watch"))
+        assertEquals(setOf(TWITTER), updated.handlersOf("twitter.com", "/"))
+    }
+
+    @Test
+    fun givenPackageModifiedShouldReplaceItsFilters() {
+        val updated = index.updated(
+            "com.twitter.android",
+            PackageFilters(listOf(HostFilter("x.com", "", TWITTER)), isBrowser = false)
+        )
+
+        assertEquals(emptySet<String>(), updated.handlersOf("twitter.com", "/"))
+        assertEquals(setOf(TWITTER), updated.handlersOf("x.com", "/"))
+    }
+
+    @Test
+    fun givenWrittenIndexShouldReadItBack() {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { index.writeTo(it) }
+
+        val read = DataInputStream(ByteArrayInputStream(bytes.toByteArray())).use { HostIndex.readFrom(it) }
+
+        assertEquals(index.size, read.size)
+        assertEquals(setOf(MAPS, CHROME), read.handlersOf("www.google.com", "/maps"))
+        assertEquals("/maps", read.pathClassOf("www.google.com", "/maps/place"))
+        assertFalse(read.hasOnlyBrowsers("m.twitter.com", "/"))
+    }
+
+    companion object {
+        private const val YOUTUBE = "com.google.android.youtube/.UrlActivity"
+        private const val TWITTER = "com.twitter.android/.UrlInterpreterActivity"
+        private const val MAPS = "com.google.android.apps.maps/.MapsActivity"
+        private const val CHROME = "com.android.chrome/.IntentDispatcher"
+        private const val DOWNLOADER = "com.downloader/.DownloadActivity"
+        private const val SEARCH = "com.google.android.googlequicksearchbox/.SearchActivity"
+    }
+}
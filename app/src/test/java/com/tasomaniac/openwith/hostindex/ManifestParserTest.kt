@@ -0,0 +1,168 @@
+package com.tasomaniac.openwith.hostindex
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.kxml2.io.KXmlParser
+import org.xmlpull.v1.XmlPullParser
+import java.io.StringReader
+
+class ManifestParserTest {
+
+    private val disabledAtRuntime = HashSet<String>()
+
+    @Test
+    fun givenViewBrowsableHttpFilterShouldReadHostsAndPaths() {
+        val filters = read(
+            activity(
+                ".UrlActivity",
+                """
+                <data android:scheme="https" android:host="www.youtube.com" android:pathPrefix="/watch" />
+                <data android:host="youtu.be" />
+                """
+            )
+        )
+
+        assertEquals(
+            listOf(
+                HostFilter("www.youtube.com", "/watch", "$PACKAGE/$PACKAGE.UrlActivity"),
+                HostFilter("youtu.be", "/watch", "$PACKAGE/$PACKAGE.UrlActivity")
+            ),
+            filters.hostFilters
+        )
+        assertFalse(filters.isBrowser)
+    }
+
+    @Test
+    fun givenPathOrPatternShouldMarkPrefixInexact() {
+        val filters = read(
+            activity(
+                ".Main",
+                """
+                <data android:scheme="https" android:host="example.com" android:path="/about" />
+                <data android:pathPattern="/users/.*" />
+                """
+            )
+        )
+
+        assertEquals(
+            listOf(
+                HostFilter("example.com", "/about", "$PACKAGE/$PACKAGE.Main", exact = false),
+                HostFilter("example.com", "/users/", "$PACKAGE/$PACKAGE.Main", exact = false)
+            ),
+            filters.hostFilters
+        )
+    }
+
+    @Test
+    fun givenAnyHostShouldBeBrowser() {
+        val filters = read(activity("Main", """<data android:scheme="http" />"""))
+
+        assertTrue(filters.isBrowser)
+        assertTrue(filters.hostFilters.isEmpty())
+    }
+
+    @Test
+    fun givenNotBrowsableShouldStillReadFilter() {
+        val filters = read(viewActivity(".Main", """<data android:scheme="https" android:host="example.com" />"""))
+
+        assertEquals(listOf(HostFilter("example.com", "", "$PACKAGE/$PACKAGE.Main")), filters.hostFilters)
+    }
+
+    @Test
+    fun givenNotBrowsableAnyHostShouldMatchAnyHostWithoutBeingBrowser() {
+        val filters = read(viewActivity(".Main", """<data android:scheme="https" />"""))
+
+        assertEquals(listOf(HostFilter("*", "", "$PACKAGE/$PACKAGE.Main")), filters.hostFilters)
+        assertFalse(filters.isBrowser)
+    }
+
+    @Test
+    fun givenTypedFilterShouldIgnoreIt() {
+        val filters = read(
+            activity(
+                ".Main",
+                """<data android:scheme="https" android:host="example.com" android:mimeType="video/*" />"""
+            )
+        )
+
+        assertEquals(PackageFilters.NONE, filters)
+    }
+
+    @Test
+    fun givenDisabledInManifestShouldIgnoreActivity() {
+        val filters = read(
+            activity(".Main", """<data android:scheme="https" android:host="example.com" />""", "false")
+        )
+
+        assertEquals(PackageFilters.NONE, filters)
+    }
+
+    @Test
+    fun givenDisabledAtRuntimeShouldIgnoreActivity() {
+        disabledAtRuntime.add("$PACKAGE/$PACKAGE.Main")
+
+        val filters = read(activity(".Main", """<data android:scheme="https" android:host="example.com" />"""))
+
+        assertEquals(PackageFilters.NONE, filters)
+    }
+
+    @Test
+    fun givenPathPatternShouldKeepItsLiteralPrefix() {
+        assertEquals("/status/", ManifestParser.literalPrefixOf("/status/.*"))
+        assertEquals("/", ManifestParser.literalPrefixOf("/\\.well-known"))
+        assertEquals("/watch", ManifestParser.literalPrefixOf("/watch"))
+        assertEquals("", ManifestParser.literalPrefixOf(".*"))
+    }
+
+    private fun activity(name: String, data: String, enabled: String = "true") =
+        """
+        <activity android:name="$name" android:enabled="$enabled">
+            <intent-filter>
+                <action android:name="android.intent.action.VIEW" />
+                <category android:name="android.intent.category.DEFAULT" />
+                <category android:name="android.intent.category.BROWSABLE" />
+                $data
+            </intent-filter>
+        </activity>
+        """
+
+    private fun viewActivity(name: String, data: String) =
+        """
+        <activity android:name="$name">
+            <intent-filter>
+                <action android:name="android.intent.action.VIEW" />
+                $data
+            </intent-filter>
+        </activity>
+        """
+
+    private fun read(application: String): PackageFilters {
+        val parser = KXmlParser().apply {
+            setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true)
+            setInput(StringReader(manifest(application)))
+        }
+        val attributes = object : ManifestParser.Attributes {
+            override fun string(name: String): String? = parser.getAttributeValue(ANDROID_NAMESPACE, name)
+
+            override fun boolean(name: String, default: Boolean) = string(name)?.toBoolean() ?: default
+        }
+        val enabledSettingOf = { component: String -> if (component in disabledAtRuntime) false else null }
+        return ManifestParser.Reader(PACKAGE, parser, attributes, enabledSettingOf).read()
+    }
+
+    private fun manifest(application: String) =
+        """
+        <manifest xmlns:android="$ANDROID_NAMESPACE" package="$PACKAGE">
+            <application>
+                $application
+            </application>
+        </manifest>
+        """.trimIndent()
+
+    companion object {
+        private const val PACKAGE = "com.google.android.youtube"
+        private const val ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android"
+    }
+}
@@ -0,0 +1,19 @@
+package com.tasomaniac.openwith.redirect
+
+import com.tasomaniac.openwith.data.Redirect
+import com.tasomaniac.openwith.data.RedirectDao
+
+class InMemoryRedirectDao : RedirectDao {
+
+    private val redirects = HashMap<String, Redirect>()
+
+    override fun redirectOf(url: String) = redirects[url]
+
+    override fun insert(redirects: List<Redirect>) {
+        redirects.forEach { this.redirects[it.url] = it }
+    }
+
+    override fun deleteExpired(now: Long) {
+        redirects.values.removeAll { it.expiresAt <= now }
+    }
+}
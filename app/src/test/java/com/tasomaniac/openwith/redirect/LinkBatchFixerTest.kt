@@ -0,0 +1,80 @@
+package com.tasomaniac.openwith.redirect
+
+import android.content.Intent
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.eq
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
+import com.nhaarman.mockitokotlin2.verify
+import com.nhaarman.mockitokotlin2.whenever
+import com.tasomaniac.openwith.resolver.ResolutionContext
+import com.tasomaniac.openwith.rx.ImmediateScheduling
+import io.reactivex.Single
+import okhttp3.HttpUrl
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class LinkBatchFixerTest {
+
+    private val onlyBrowsers = HashSet<String>()
+    private val context = mock<ResolutionContext>()
+    private val browserIntentChecker = mock<BrowserIntentChecker> {
+        on { hasOnlyBrowsers(any(), eq(context)) } doAnswer {
+            it.getArgument<Intent>(0).dataString in onlyBrowsers
+        }
+    }
+    private val redirectFixer = mock<RedirectFixer> {
+        on { followRedirects(any()) } doAnswer {
+            val url = it.getArgument<HttpUrl>(0)
+            Single.just(url.newBuilder().host("final.${url.host()}").build())
+        }
+    }
+    private val fixer = LinkBatchFixer(browserIntentChecker, redirectFixer, ImmediateScheduling()) { source, url ->
+        link(url?.toString() ?: source.dataString!!)
+    }
+
+    @Test
+    fun givenOnlyBrowsersShouldRedirectAndKeepOrder() {
+        onlyBrowsers.add("https://t.co/a")
+        onlyBrowsers.add("https://bit.ly/b")
+
+        val fixed = fix("https://t.co/a", "https://www.youtube.com/watch", "https://bit.ly/b")
+
+        assertEquals(
+            listOf("https://final.t.co/a", "https://www.youtube.com/watch", "https://final.bit.ly/b"),
+            fixed
+        )
+    }
+
+    @Test
+    fun givenSameHostShouldCheckEachLink() {
+        onlyBrowsers.add("https://www.google.com/search")
+
+        val fixed = fix("https://www.google.com/search", "https://www.google.com/maps/place")
+
+        assertEquals(listOf("https://final.www.google.com/search", "https://www.google.com/maps/place"), fixed)
+    }
+
+    @Test
+    fun givenNotHttpShouldKeepLinkAsIs() {
+        val fixed = fix("mailto:someone@example.com")
+
+        assertEquals(listOf("mailto:someone@example.com"), fixed)
+        verify(redirectFixer, never()).followRedirects(any())
+    }
+
+    @Test
+    fun shouldPrefetchHandlersOfFixedLinks() {
+        fix("https://www.youtube.com/watch")
+
+        verify(context).resolveList(any())
+    }
+
+    private fun fix(vararg urls: String) =
+        fixer.fix(urls.map(::link), context).blockingGet().map { it.dataString }
+
+    private fun link(url: String) = mock<Intent>().also {
+        whenever(it.dataString).thenReturn(url)
+    }
+}
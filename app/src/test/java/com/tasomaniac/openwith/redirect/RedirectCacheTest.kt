@@ -0,0 +1,37 @@
+package com.tasomaniac.openwith.redirect
+
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.spy
+import com.nhaarman.mockitokotlin2.times
+import com.nhaarman.mockitokotlin2.verify
+import okhttp3.HttpUrl
+import org.junit.Test
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.HOURS
+
+class RedirectCacheTest {
+
+    private var now = DAYS.toMillis(1)
+    private val dao = spy(InMemoryRedirectDao())
+    private val cache = RedirectCache(dao) { now }
+
+    @Test
+    fun shouldDeleteExpiredRedirectsOncePerDay() {
+        cache.put(listOf(hop("https://t.co/a")), TARGET)
+        now += HOURS.toMillis(1)
+        cache.put(listOf(hop("https://t.co/b")), TARGET)
+
+        verify(dao, times(1)).deleteExpired(any())
+
+        now += DAYS.toMillis(1)
+        cache.put(listOf(hop("https://t.co/c")), TARGET)
+
+        verify(dao, times(2)).deleteExpired(any())
+    }
+
+    private fun hop(url: String) = RedirectHop(HttpUrl.parse(url)!!, TARGET, now + DAYS.toMillis(2))
+
+    companion object {
+        private val TARGET = HttpUrl.parse("https://example.com/")!!
+    }
+}
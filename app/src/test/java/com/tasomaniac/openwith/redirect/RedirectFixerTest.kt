@@ -1,5 +1,7 @@
 package com.tasomaniac.openwith.redirect
 
+import com.tasomaniac.openwith.data.Redirect
+import com.tasomaniac.openwith.data.RedirectDao
 import com.tasomaniac.openwith.rx.ImmediateScheduling
 import io.reactivex.observers.TestObserver
 import okhttp3.HttpUrl
@@ -8,18 +10,23 @@ import okhttp3.mockwebserver.Dispatcher
 import okhttp3.mockwebserver.MockResponse
 import okhttp3.mockwebserver.MockWebServer
 import okhttp3.mockwebserver.RecordedRequest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
 import org.junit.Rule
 import org.junit.Test
 import org.mockito.junit.MockitoJUnit
 import org.mockito.junit.MockitoRule
+import java.util.concurrent.TimeUnit.SECONDS
 
 class RedirectFixerTest {
 
     @Rule @JvmField val server = MockWebServer()
     @Rule @JvmField val mockito: MockitoRule = MockitoJUnit.rule()
 
+    private var now = 0L
+    private val redirectCache = RedirectCache(InMemoryRedirectDao()) { now }
     private val redirectFixer: RedirectFixer =
-        RedirectFixer(OkHttpClient(), ImmediateScheduling(), 1)
+        RedirectFixer(OkHttpClient(), redirectCache, ImmediateScheduling(), 1)
 
     @Test
     fun givenNoRedirectShouldReturnOriginalUrl() {
@@ -107,11 +114,172 @@ class RedirectFixerTest {
         }
     }
 
+    @Test
+    fun givenFollowedBeforeShouldReturnFromCache() {
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(noRedirect())
+        follow("original")
+
+        follow("original").assertUrlWithPath("redirect")
+
+        assertEquals(2, server.requestCount)
+    }
+
+    @Test
+    fun givenIntermediateHopFollowedBeforeShouldReturnFromCache() {
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(redirectTo("redirect/2"))
+        server.enqueue(noRedirect())
+        follow("original")
+
+        follow("redirect").assertUrlWithPath("redirect/2")
+
+        assertEquals(3, server.requestCount)
+    }
+
+    @Test
+    fun givenChainEntersCachedHopShouldStopFollowing() {
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(redirectTo("redirect/2"))
+        server.enqueue(noRedirect())
+        follow("original")
+        server.enqueue(redirectTo("redirect"))
+
+        follow("another").assertUrlWithPath("redirect/2")
+
+        assertEquals(4, server.requestCount)
+    }
+
+    @Test
+    fun givenNoStoreShouldNotCache() {
+        server.enqueue(redirectTo("redirect").addHeader("Cache-Control", "no-store"))
+        server.enqueue(noRedirect())
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(noRedirect())
+        follow("original")
+
+        follow("original").assertUrlWithPath("redirect")
+
+        assertEquals(4, server.requestCount)
+    }
+
+    @Test
+    fun givenMaxAgeExpiredShouldFollowAgain() {
+        server.enqueue(redirectTo("redirect").addHeader("Cache-Control", "max-age=60"))
+        server.enqueue(noRedirect())
+        server.enqueue(redirectTo("redirect/2"))
+        server.enqueue(noRedirect())
+        follow("original")
+
+        now += SECONDS.toMillis(61)
+
+        follow("original").assertUrlWithPath("redirect/2")
+    }
+
+    @Test
+    fun givenRedirectShouldRequestWithHead() {
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(noRedirect())
+
+        follow("original")
+
+        assertEquals("HEAD", server.takeRequest().method)
+        assertEquals("HEAD", server.takeRequest().method)
+    }
+
+    @Test
+    fun givenHeadRejectedShouldFallbackToGet() {
+        server.setDispatcher(object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest) = when {
+                request.method == "HEAD" -> MockResponse().setResponseCode(405)
+                request.path == "/original" -> redirectTo("redirect")
+                else -> noRedirect()
+            }
+        })
+
+        val report = followWithReport("original").values().single()
+
+        assertEquals(server.url("redirect"), report.finalUrl)
+        assertEquals(listOf("HEAD", "GET", "HEAD", "GET"), report.hops.map { it.method })
+    }
+
+    @Test
+    fun givenMoreRedirectsThanMaxHopsShouldStopAtMaxHops() {
+        val redirectFixer = RedirectFixer(OkHttpClient(), redirectCache, ImmediateScheduling(), 1, maxHops = 2)
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(redirectTo("redirect/2"))
+        server.enqueue(redirectTo("redirect/3"))
+
+        val report = redirectFixer.followRedirectsWithReport(server.url("original")).test().values().single()
+
+        assertEquals(server.url("redirect/2"), report.finalUrl)
+        assertEquals(RedirectReport.Termination.MAX_HOPS, report.termination)
+        assertEquals(2, server.requestCount)
+    }
+
+    @Test
+    fun givenRedirectShouldReportEveryHop() {
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(noRedirect())
+
+        val report = followWithReport("original").values().single()
+
+        assertEquals(RedirectReport.Termination.FINAL_URL, report.termination)
+        assertEquals(listOf(server.url("original"), server.url("redirect")), report.hops.map { it.url })
+        assertTrue(report.hops.all { it.latencyMillis >= 0 && it.estimatedBytes > 0 })
+    }
+
+    @Test
+    fun givenErrorResponseShouldStopWithoutCaching() {
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(MockResponse().setResponseCode(503))
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(redirectTo("redirect/2"))
+        server.enqueue(noRedirect())
+
+        val report = followWithReport("original").values().single()
+
+        assertEquals(RedirectReport.Termination.HTTP_ERROR, report.termination)
+        assertEquals(server.url("redirect"), report.finalUrl)
+        follow("original").assertUrlWithPath("redirect/2")
+        assertEquals(5, server.requestCount)
+    }
+
+    @Test
+    fun givenCacheFailsShouldReportError() {
+        val dao = object : RedirectDao by InMemoryRedirectDao() {
+            override fun redirectOf(url: String): Redirect? = throw IllegalStateException("Database is closed")
+        }
+        val redirectFixer = RedirectFixer(OkHttpClient(), RedirectCache(dao) { now }, ImmediateScheduling(), 1)
+
+        val report = redirectFixer.followRedirectsWithReport(server.url("original")).test().values().single()
+
+        assertEquals(RedirectReport.Termination.ERROR, report.termination)
+        assertEquals(server.url("original"), report.finalUrl)
+    }
+
+    @Test
+    fun givenFollowedBeforeShouldReportCacheHit() {
+        server.enqueue(redirectTo("redirect"))
+        server.enqueue(noRedirect())
+        follow("original")
+
+        val report = followWithReport("original").values().single()
+
+        assertEquals(RedirectReport.Termination.CACHE_HIT, report.termination)
+        assertTrue(report.hops.isEmpty())
+    }
+
+    private fun followWithReport(path: String) = redirectFixer.followRedirectsWithReport(server.url(path)).test()
+
+    private fun follow(path: String) = redirectFixer.followRedirects(server.url(path)).test()
+
     private fun TestObserver<HttpUrl>.assertUrlWithPath(path: String) = apply { assertValue(server.url(path)) }
 
     private fun noRedirect() = MockResponse()
 
-    private fun redirectTo(path: String) = MockResponse().addHeader("Location", server.url(path))
+    private fun redirectTo(path: String) =
+        MockResponse().setResponseCode(302).addHeader("Location", server.url(path))
 
     private infix fun given(given: MockWebServer.() -> Unit): Then {
         server.given()
@@ -1,62 +1,111 @@
 package com.tasomaniac.openwith.resolver;
 
 import android.content.SharedPreferences;
+import com.tasomaniac.openwith.data.ChooserHistoryDao;
+import com.tasomaniac.openwith.data.ChooserHistoryEntry;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 public class ChooserHistoryTest {
 
     @Rule public MockitoRule rule = MockitoJUnit.rule();
 
     @Mock SharedPreferences preferences;
+    @Mock SharedPreferences.Editor editor;
+    @Mock ChooserHistoryDao dao;
 
     @Test
     public void fromSettings() {
-        String anySaveString = "key1|5#key2|3";
-        givenSaveString(anySaveString);
+        List<ChooserHistoryEntry> entries = ChooserHistory.parseLegacyHistory("key1|5#key2|3");
+
+        assertEquals(Arrays.asList(entry("key1", 5), entry("key2", 3)), entries);
+    }
 
-        ChooserHistory history = ChooserHistory.fromSettings(preferences);
+    @Test
+    public void shouldSkipInvalidCounts() {
+        List<ChooserHistoryEntry> entries = ChooserHistory.parseLegacyHistory("key1|5#key2|a#key3|4");
 
-        assertEquals(anySaveString, history.getAsSaveString());
+        assertEquals(Arrays.asList(entry("key1", 5), entry("key3", 4)), entries);
     }
 
-    @Test(expected = NumberFormatException.class)
-    public void shouldThrowExceptionForInvalid() {
-        String anySaveString = "key1|5#key2|a";
-        givenSaveString(anySaveString);
+    @Test
+    public void shouldOmitInvalidParts() {
+        List<ChooserHistoryEntry> entries = ChooserHistory.parseLegacyHistory("key1|5#key2#key3|4");
+
+        assertEquals(Arrays.asList(entry("key1", 5), entry("key3", 4)), entries);
+    }
 
-        ChooserHistory history = ChooserHistory.fromSettings(preferences);
+    @Test
+    public void shouldOmitInvalidLastPart() {
+        List<ChooserHistoryEntry> entries = ChooserHistory.parseLegacyHistory("key1|5#key2|5#key3");
 
-        assertEquals(anySaveString, history.getAsSaveString());
+        assertEquals(Arrays.asList(entry("key1", 5), entry("key2", 5)), entries);
     }
 
     @Test
-    public void shouldOmitInvalidParts() {
-        givenSaveString("key1|5#key2#key3|4");
+    public void shouldImportLegacyHistoryOnceOnFirstLoad() {
+        givenSaveString("key1|5");
+        given(dao.entries()).willReturn(Collections.singletonList(entry("key1", 5)));
+        ChooserHistory history = new ChooserHistory(dao, preferences);
 
-        ChooserHistory history = ChooserHistory.fromSettings(preferences);
+        assertEquals(5, history.get("key1"));
+        assertEquals(0, history.get("key2"));
 
-        assertEquals("key1|5#key3|4", history.getAsSaveString());
+        then(dao).should(times(1)).insert(Collections.singletonList(entry("key1", 5)));
+        then(dao).should(times(1)).entries();
+        then(editor).should().remove("history");
     }
 
     @Test
-    public void shouldOmitInvalidLastPart() {
-        givenSaveString("key1|5#key2|5#key3");
+    public void shouldKeepLegacyHistoryWhenImportFails() {
+        givenSaveString("key1|5");
+        willThrow(new IllegalStateException()).given(dao).insert(anyList());
+        ChooserHistory history = new ChooserHistory(dao, preferences);
+
+        try {
+            history.get("key1");
+            fail();
+        } catch (IllegalStateException expected) {
+            then(editor).should(never()).remove(anyString());
+        }
+    }
+
+    @Test
+    public void shouldWriteOnlyTheChosenPackage() {
+        givenSaveString("");
+        given(dao.entries()).willReturn(Collections.singletonList(entry("key1", 5)));
+        ChooserHistory history = new ChooserHistory(dao, preferences);
 
-        ChooserHistory history = ChooserHistory.fromSettings(preferences);
+        history.add("key1");
 
-        assertEquals("key1|5#key2|5", history.getAsSaveString());
+        assertEquals(6, history.get("key1"));
+        then(dao).should().increment("key1");
     }
 
     private void givenSaveString(String anySaveString) {
         given(preferences.getString(anyString(), anyString())).willReturn(anySaveString);
+        given(preferences.edit()).willReturn(editor);
+        given(editor.remove(anyString())).willReturn(editor);
     }
 
+    private static ChooserHistoryEntry entry(String packageName, int timesChosen) {
+        return new ChooserHistoryEntry(packageName, timesChosen);
+    }
 }
@@ -0,0 +1,64 @@
+package com.tasomaniac.openwith.resolver
+
+import com.tasomaniac.openwith.data.ChooserScore
+import com.tasomaniac.openwith.data.ChooserScoreDao
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.TimeUnit.DAYS
+
+class ChooserRankingTest {
+
+    private var now = DAYS.toMillis(1000)
+    private val dao = InMemoryChooserScoreDao()
+
+    @Test
+    fun givenNeverChosenShouldScoreZero() {
+        assertEquals(0.0, ranking("example.com").scoreOf("com.browser", "Browser"), 0.0)
+    }
+
+    @Test
+    fun givenRecentChoiceShouldOutrankOldHeavyUse() {
+        dao.insert(ChooserScore("youtube.com", "com.browser/Browser", 500.0, now - DAYS.toMillis(365)))
+        val ranking = ranking("youtube.com")
+
+        ranking.record("com.youtube/Main")
+
+        assertTrue(ranking.scoreOf("com.youtube", "Main") > ranking.scoreOf("com.browser", "Browser"))
+    }
+
+    @Test
+    fun givenChoicesShouldHalveEveryThirtyDays() {
+        val ranking = ranking("example.com")
+        ranking.record("com.browser/Browser")
+        ranking.record("com.browser/Browser")
+
+        now += DAYS.toMillis(30)
+
+        assertEquals(1.0, ranking("example.com").scoreOf("com.browser", "Browser"), 1e-9)
+    }
+
+    @Test
+    fun givenOtherHostShouldNotCount() {
+        ranking("example.com").record("com.browser/Browser")
+
+        assertEquals(0.0, ranking("other.com").scoreOf("com.browser", "Browser"), 0.0)
+    }
+
+    private fun ranking(host: String) = ChooserRanking(host, dao) { now }
+
+    private class InMemoryChooserScoreDao : ChooserScoreDao {
+
+        private val scores = HashMap<Pair<String, String>, ChooserScore>()
+
+        override fun scoresOf(host: String) = scores.values.filter { it.host == host }
+
+        override fun insert(score: ChooserScore) {
+            scores[score.host to score.component] = score
+        }
+
+        override fun deleteUsedBefore(usedBefore: Long) {
+            scores.values.removeAll { it.lastUsed < usedBefore }
+        }
+    }
+}
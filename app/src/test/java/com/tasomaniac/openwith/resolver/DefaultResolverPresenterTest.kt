@@ -10,6 +10,7 @@ import com.nhaarman.mockitokotlin2.atLeastOnce
 import com.nhaarman.mockitokotlin2.doReturn
 import com.nhaarman.mockitokotlin2.eq
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
 import com.nhaarman.mockitokotlin2.reset
 import com.tasomaniac.openwith.R
 import com.tasomaniac.openwith.data.PreferredAppDao
@@ -49,7 +50,16 @@ class DefaultResolverPresenterTest {
 
     init {
         val preferredResolver = PreferredResolver(mock(), mock(), dao)
-        useCase = ResolverUseCase(sourceIntent, preferredResolver, intentResolver, mock(), dao, ImmediateScheduling())
+        useCase = ResolverUseCase(
+            sourceIntent,
+            preferredResolver,
+            intentResolver,
+            mock(),
+            mock(),
+            dao,
+            ImmediateScheduling(),
+            mock()
+        )
         presenter = DefaultResolverPresenter(resources, sourceIntent, callerPackage, useCase, viewState)
     }
 
@@ -141,6 +151,35 @@ class DefaultResolverPresenterTest {
         then(view).should().setupActionButtons()
     }
 
+    @Test
+    fun givenDisplayedResultWithSameShapeShouldUpdateInPlace() {
+        givenResources()
+        val listener = captureIntentResolverListener()
+        val multipleItems = listOf<DisplayActivityInfo>(mock(), mock())
+        listener.onIntentResolved(IntentResolverResult(multipleItems, null, false, fromSnapshot = true))
+        reset(view)
+
+        val fresh = dataWith(multipleItems + mock<DisplayActivityInfo>(), null)
+        listener.onIntentResolved(fresh)
+
+        then(view).should().updateData(fresh)
+        then(view).should(never()).displayData(any())
+    }
+
+    @Test
+    fun givenDisplayedResultWithDifferentShapeShouldDisplayAgain() {
+        givenResources()
+        givenResourcesFiltered()
+        val listener = captureIntentResolverListener()
+        listener.onIntentResolved(dataWith(listOf(mock(), mock()), null))
+        reset(view)
+
+        val fresh = dataWith(NON_EMPTY_LIST, givenDisplayResolveInfoWithIntentAndLabel(mock(), "filtered"))
+        listener.onIntentResolved(fresh)
+
+        then(view).should().displayData(fresh)
+    }
+
     private fun givenResourcesFiltered() {
         given(
             resources.getString(
@@ -0,0 +1,56 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.Intent
+import android.content.pm.ResolveInfo
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.times
+import com.nhaarman.mockitokotlin2.verify
+import com.tasomaniac.openwith.browser.resolver.BrowserResolver
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class ResolutionContextTest {
+
+    private val handler = mock<ResolveInfo>()
+    private val resolveListCache = mock<ResolveListCache> {
+        on { query(any()) }.thenAnswer { mutableListOf(handler) }
+    }
+    private val browserResolver = mock<BrowserResolver> {
+        on { queryBrowsers() }.thenReturn(listOf(mock()))
+    }
+    private val context = ResolutionContext("token", resolveListCache, browserResolver)
+
+    @Test
+    fun givenSameLinkShouldQueryHandlersOnce() {
+        val intent = mock<Intent>()
+
+        context.resolveList(intent)
+        context.resolveList(intent).clear()
+
+        assertEquals(listOf(handler), context.resolveList(intent))
+        verify(resolveListCache).query(intent)
+    }
+
+    @Test
+    fun shouldQueryBrowsersOnce() {
+        context.browsers()
+        context.browsers()
+
+        verify(browserResolver).queryBrowsers()
+    }
+
+    @Test
+    fun givenInvalidatedShouldQueryAgain() {
+        val intent = mock<Intent>()
+        context.resolveList(intent)
+        context.browsers()
+
+        context.invalidate()
+        context.resolveList(intent)
+        context.browsers()
+
+        verify(resolveListCache, times(2)).query(intent)
+        verify(browserResolver, times(2)).queryBrowsers()
+    }
+}
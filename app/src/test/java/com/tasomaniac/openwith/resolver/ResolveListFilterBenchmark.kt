@@ -0,0 +1,86 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.pm.ResolveInfo
+import com.tasomaniac.openwith.Benchmark
+import com.tasomaniac.openwith.resolver.ResolveListFilterTest.Companion.handler
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.experimental.categories.Category
+import java.util.ArrayList
+
+/**
+ * Compares filtering a resolve list of [LIST_SIZE] handlers with nested loops, as each step used to do,
+ * versus collecting every step first and applying them in a single pass.
+ */
+class ResolveListFilterBenchmark {
+
+    private val handlers = (0 until LIST_SIZE).map { handler("com.example.$it", "Handler$it") }
+    private val browsers = (0 until LIST_SIZE).map { handler("com.browser.$it", "Browser$it") } +
+        handlers.filterIndexed { index, _ -> index % 4 == 0 }
+    private val excluded = handlers.filterIndexed { index, _ -> index % 10 == 1 }
+    private val callerPackage = handlers[2].activityInfo.packageName
+
+    @Test
+    fun singlePassKeepsTheResultOfNestedLoops() {
+        assertEquals(legacy(alwaysAsk = true), singlePass(alwaysAsk = true))
+        assertEquals(legacy(alwaysAsk = false), singlePass(alwaysAsk = false))
+    }
+
+    @Test
+    @Category(Benchmark::class)
+    fun benchmark() {
+        repeat(WARM_UP) {
+            legacy(alwaysAsk = true)
+            singlePass(alwaysAsk = true)
+        }
+
+        val legacyNanos = medianNanos { legacy(alwaysAsk = true) }
+        val singlePassNanos = medianNanos { singlePass(alwaysAsk = true) }
+
+        println("Nested loops: $legacyNanos ns, single pass: $singlePassNanos ns")
+    }
+
+    private fun legacy(alwaysAsk: Boolean): List<ResolveInfo> {
+        val list = ArrayList(handlers)
+        val initialList = ArrayList(list)
+        browsers.forEach { browser ->
+            if (initialList.find { it.isSameAs(browser) } == null) list.add(browser)
+        }
+        if (!alwaysAsk) {
+            list.removeAll(list.filter { resolve -> browsers.find { it.isSameAs(resolve) } != null })
+        }
+        list.removeAll { info -> excluded.any { it.isSameAs(info) } }
+        list.removeAll(list.filter { it.activityInfo.packageName == callerPackage })
+        return list
+    }
+
+    private fun singlePass(alwaysAsk: Boolean): List<ResolveInfo> {
+        val list = ArrayList(handlers)
+        val filter = ResolveListFilter()
+        if (alwaysAsk) filter.append(browsers) else filter.replace(browsers)
+        filter.exclude(excluded)
+            .excludePackage(callerPackage)
+            .applyTo(list)
+        return list
+    }
+
+    private fun ResolveInfo.isSameAs(other: ResolveInfo) =
+        "${activityInfo.packageName}/${activityInfo.name}" ==
+            "${other.activityInfo.packageName}/${other.activityInfo.name}"
+
+    private inline fun medianNanos(block: () -> Unit): Long {
+        val nanos = LongArray(RUNS) {
+            val start = System.nanoTime()
+            block()
+            System.nanoTime() - start
+        }
+        nanos.sort()
+        return nanos[RUNS / 2]
+    }
+
+    companion object {
+        private const val LIST_SIZE = 200
+        private const val WARM_UP = 20
+        private const val RUNS = 21
+    }
+}
@@ -0,0 +1,95 @@
+package com.tasomaniac.openwith.resolver
+
+import android.content.pm.ActivityInfo
+import android.content.pm.ResolveInfo
+import com.nhaarman.mockitokotlin2.mock
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class ResolveListFilterTest {
+
+    private val youtube = handler("com.google.android.youtube", "UrlActivity")
+    private val chrome = handler("com.android.chrome", "Main")
+    private val firefox = handler("org.mozilla.firefox", "App")
+    private val daydream = handler("com.google.vr", "Daydream")
+
+    @Test
+    fun givenNothingCollectedShouldKeepList() {
+        val list = mutableListOf(youtube, chrome, youtube)
+
+        ResolveListFilter().applyTo(list)
+
+        assertEquals(listOf(youtube, chrome, youtube), list)
+    }
+
+    @Test
+    fun givenAppendedShouldAddOnlyMissingHandlersAfterTheList() {
+        val list = mutableListOf(chrome, youtube)
+
+        ResolveListFilter().append(listOf(firefox, handler("com.android.chrome", "Main"))).applyTo(list)
+
+        assertEquals(listOf(chrome, youtube, firefox), list)
+    }
+
+    @Test
+    fun givenReplacedAndAppendedShouldMoveHandlerToTheEnd() {
+        val list = mutableListOf(chrome, youtube, firefox)
+
+        ResolveListFilter()
+            .replace(listOf(chrome, firefox))
+            .append(listOf(chrome))
+            .applyTo(list)
+
+        assertEquals(listOf(youtube, chrome), list)
+    }
+
+    @Test
+    fun givenExcludedShouldNeitherKeepNorAppend() {
+        val list = mutableListOf(daydream, youtube)
+
+        ResolveListFilter()
+            .exclude(listOf(daydream, firefox))
+            .append(listOf(firefox, chrome))
+            .applyTo(list)
+
+        assertEquals(listOf(youtube, chrome), list)
+    }
+
+    @Test
+    fun givenExclusionProvidersShouldExcludeTheirKeys() {
+        val list = mutableListOf(daydream, youtube, chrome)
+        val providers = setOf(
+            exclusions(ResolveListFilter.keyOf(daydream)),
+            exclusions(ResolveListFilter.keyOf(chrome))
+        )
+        val filter = ResolveListFilter()
+
+        ExclusionStage(providers).process(filter)
+        filter.applyTo(list)
+
+        assertEquals(listOf(youtube), list)
+    }
+
+    @Test
+    fun givenExcludedPackageShouldRemoveAllItsHandlers() {
+        val list = mutableListOf(youtube, handler("com.google.android.youtube", "ShareActivity"), chrome)
+
+        ResolveListFilter().excludePackage("com.google.android.youtube").applyTo(list)
+
+        assertEquals(listOf(chrome), list)
+    }
+
+    private fun exclusions(vararg keys: String) = object : ExclusionProvider {
+        override fun excludedKeys() = keys.toSet()
+    }
+
+    companion object {
+
+        fun handler(packageName: String, name: String) = mock<ResolveInfo>().apply {
+            activityInfo = mock<ActivityInfo>().apply {
+                this.packageName = packageName
+                this.name = name
+            }
+        }
+    }
+}
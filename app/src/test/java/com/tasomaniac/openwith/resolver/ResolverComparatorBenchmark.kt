@@ -0,0 +1,156 @@
+package com.tasomaniac.openwith.resolver
+
+import android.app.usage.UsageStats
+import android.content.Intent
+import android.content.IntentFilter
+import android.content.pm.ActivityInfo
+import android.content.pm.PackageManager
+import android.content.pm.ResolveInfo
+import com.nhaarman.mockitokotlin2.any
+import com.nhaarman.mockitokotlin2.doAnswer
+import com.nhaarman.mockitokotlin2.doReturn
+import com.nhaarman.mockitokotlin2.mock
+import com.tasomaniac.openwith.util.Intents
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.text.Collator
+import java.util.Locale
+import java.util.Random
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Compares the amount of work done to sort a typical list of handlers
+ * by loading labels on every comparison versus precomputing the sort keys.
+ */
+class ResolverComparatorBenchmark {
+
+    private val sourceIntent = mock<Intent> {
+        on { scheme } doReturn "https"
+    }
+    private val comparator = ResolverComparator(null, null, null, emptySet(), sourceIntent)
+    private val labelLoader = LabelLoader(mock())
+
+    private val labelLoads = AtomicInteger()
+
+    /**
+     * Some of the handlers were chosen before, and a few are priority packages,
+     * so that only some of the comparisons fall through to the labels.
+     */
+    private val history = mock<ChooserHistory> {
+        on { get(any()) } doAnswer { it.getArgument<String>(0).removePrefix("com.example.").toInt() % HISTORY_SPREAD }
+    }
+    private val priorityPackages = setOf("com.example.1", "com.example.2")
+
+    @Test
+    fun precomputedSortKeysLoadEachLabelOnce() {
+        val list = handlers(LIST_SIZE)
+
+        labelLoads.set(0)
+        val legacyComparator = LegacyResolverComparator(mock(), history, null, priorityPackages, sourceIntent)
+        list.shuffled(Random(SEED)).sortedWith(legacyComparator)
+        val legacyLabelLoads = labelLoads.get()
+
+        labelLoads.set(0)
+        val shuffled = list.shuffled(Random(SEED))
+        val rankedComparator = ResolverComparator(history, null, null, priorityPackages, sourceIntent)
+        val keys = rankedComparator.sortKeysFor(shuffled, labelLoader.load(shuffled))
+        keys.sortWith(Comparator { lhs, rhs -> lhs.compareTo(rhs) })
+
+        println("Label loads per sort before: $legacyLabelLoads")
+        println("Label loads per sort after: ${labelLoads.get()}")
+        assertEquals(LIST_SIZE, labelLoads.get())
+        assertTrue(legacyLabelLoads > LIST_SIZE)
+    }
+
+    @Test
+    fun sortsByLabelWhenEverythingElseIsEqual() {
+        val list = handlers(LIST_SIZE).shuffled(Random(SEED)).toMutableList()
+
+        comparator.sort(list, labelLoader.load(list))
+
+        assertEquals(list.sortedBy { it.activityInfo.name }, list)
+    }
+
+
+    private fun handlers(count: Int) = (0 until count).map { index ->
+        val label = "Handler %03d".format(index)
+        mock<ResolveInfo> {
+            on { loadLabel(any()) } doAnswer {
+                labelLoads.incrementAndGet()
+                label
+            }
+        }.apply {
+            activityInfo = mock<ActivityInfo>().apply {
+                packageName = "com.example.$index"
+                name = label
+            }
+        }
+    }
+
+    /**
+     * The comparator as it was before the sort keys, which loaded both labels on every comparison.
+     */
+    private class LegacyResolverComparator(
+        private val packageManager: PackageManager,
+        private val history: ChooserHistory?,
+        private val usageStatsMap: Map<String, UsageStats>?,
+        private val priorityPackages: Set<String>?,
+        sourceIntent: Intent
+    ) : Comparator<ResolveInfo> {
+
+        private val collator = Collator.getInstance(Locale.getDefault())
+        private val isHttp = Intents.isHttp(sourceIntent)
+
+        @Suppress("ReturnCount", "ComplexMethod")
+        override fun compare(lhs: ResolveInfo, rhs: ResolveInfo): Int {
+            if (isHttp) {
+                val lhsSpecific = isSpecificUriMatch(lhs.match)
+                val rhsSpecific = isSpecificUriMatch(rhs.match)
+                if (lhsSpecific != rhsSpecific) {
+                    return if (lhsSpecific) -1 else 1
+                }
+            }
+
+            if (history != null) {
+                val leftCount = history.get(lhs.activityInfo.packageName)
+                val rightCount = history.get(rhs.activityInfo.packageName)
+                if (leftCount != rightCount) {
+                    return rightCount.compareTo(leftCount)
+                }
+            }
+
+            if (priorityPackages != null) {
+                val leftPriority = lhs.activityInfo.packageName in priorityPackages
+                val rightPriority = rhs.activityInfo.packageName in priorityPackages
+                if (leftPriority != rightPriority) {
+                    return rightPriority.compareTo(leftPriority)
+                }
+            }
+
+            if (usageStatsMap != null) {
+                val timeDiff = timeSpentIn(rhs.activityInfo.packageName) - timeSpentIn(lhs.activityInfo.packageName)
+                if (timeDiff != 0L) {
+                    return if (timeDiff > 0) 1 else -1
+                }
+            }
+
+            val sa: CharSequence = lhs.loadLabel(packageManager) ?: lhs.activityInfo.name
+            val sb: CharSequence = rhs.loadLabel(packageManager) ?: rhs.activityInfo.name
+            return collator.compare(sa.toString(), sb.toString())
+        }
+
+        private fun timeSpentIn(packageName: String) = usageStatsMap?.get(packageName)?.totalTimeInForeground ?: 0L
+
+        private fun isSpecificUriMatch(match: Int): Boolean {
+            val category = match and IntentFilter.MATCH_CATEGORY_MASK
+            return category >= IntentFilter.MATCH_CATEGORY_HOST && category <= IntentFilter.MATCH_CATEGORY_PATH
+        }
+    }
+
+    companion object {
+        private const val LIST_SIZE = 40
+        private const val SEED = 42L
+        private const val HISTORY_SPREAD = 3
+    }
+}
@@ -0,0 +1,93 @@
+package com.tasomaniac.openwith.resolver
+
+import com.tasomaniac.openwith.data.PackageUsage
+import com.tasomaniac.openwith.resolver.UsageAggregate.ForegroundEvent
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.concurrent.TimeUnit.DAYS
+import java.util.concurrent.TimeUnit.HOURS
+
+class UsageAggregateTest {
+
+    @Test
+    fun givenForegroundAndBackgroundShouldCountSession() {
+        val usages = usagesOf(
+            null,
+            foreground(CHROME, 1),
+            background(CHROME, 3),
+            foreground(CHROME, 4),
+            background(CHROME, 5)
+        )
+
+        assertEquals(listOf(PackageUsage(CHROME, DAY, HOURS.toMillis(3))), usages)
+    }
+
+    @Test
+    fun givenOrphanBackgroundWithoutCheckpointShouldDropIt() {
+        val usages = usagesOf(null, background(CHROME, 2))
+
+        assertEquals(emptyList<PackageUsage>(), usages)
+    }
+
+    @Test
+    fun givenOrphanBackgroundAfterCheckpointShouldCountFromCheckpoint() {
+        val usages = usagesOf(at(1), background(CHROME, 2))
+
+        assertEquals(listOf(PackageUsage(CHROME, DAY, HOURS.toMillis(1))), usages)
+    }
+
+    @Test
+    fun givenOpenSessionShouldCountUntilNow() {
+        val usages = usagesOf(null, foreground(CHROME, 20))
+
+        assertEquals(listOf(PackageUsage(CHROME, DAY, HOURS.toMillis(2))), usages)
+    }
+
+    @Test
+    fun givenRepeatedForegroundShouldCountFromTheFirst() {
+        val usages = usagesOf(null, foreground(CHROME, 1), foreground(CHROME, 2), background(CHROME, 4))
+
+        assertEquals(listOf(PackageUsage(CHROME, DAY, HOURS.toMillis(3))), usages)
+    }
+
+    @Test
+    fun givenSessionsOfDifferentDaysShouldBucketByTheirEnd() {
+        val usages = usagesOf(
+            null,
+            foreground(CHROME, -2),
+            background(CHROME, -1),
+            foreground(CHROME, 10),
+            background(CHROME, 11),
+            foreground(TWITTER, 12),
+            background(TWITTER, 13)
+        )
+
+        assertEquals(
+            setOf(
+                PackageUsage(CHROME, DAY - 1, HOURS.toMillis(1)),
+                PackageUsage(CHROME, DAY, HOURS.toMillis(1)),
+                PackageUsage(TWITTER, DAY, HOURS.toMillis(1))
+            ),
+            usages.toSet()
+        )
+    }
+
+    private fun usagesOf(sessionsStart: Long?, vararg events: ForegroundEvent) =
+        UsageAggregate.usagesOf(events.asSequence(), sessionsStart, NOW)
+
+    private fun foreground(packageName: String, hour: Int) = ForegroundEvent(packageName, at(hour), true)
+
+    private fun background(packageName: String, hour: Int) = ForegroundEvent(packageName, at(hour), false)
+
+    /**
+     * @return the time at the [hour] of [DAY], which may be negative for the day before.
+     */
+    private fun at(hour: Int) = DAYS.toMillis(DAY) + HOURS.toMillis(hour.toLong())
+
+    companion object {
+        private const val DAY = 18000L
+        private val NOW = DAYS.toMillis(DAY) + HOURS.toMillis(22)
+        private const val CHROME = "com.android.chrome"
+        private const val TWITTER = "com.twitter.android"
+    }
+}
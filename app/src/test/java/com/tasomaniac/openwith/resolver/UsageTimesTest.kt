@@ -0,0 +1,28 @@
+package com.tasomaniac.openwith.resolver
+
+import com.tasomaniac.openwith.data.PackageUsageTotal
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class UsageTimesTest {
+
+    private val usageTimes = UsageTimes(
+        listOf(
+            PackageUsageTotal("com.twitter.android", 300),
+            PackageUsageTotal("com.android.chrome", 100),
+            PackageUsageTotal("org.mozilla.firefox", 200)
+        )
+    )
+
+    @Test
+    fun givenKnownPackageShouldReturnItsTime() {
+        assertEquals(100, usageTimes.timeSpentIn("com.android.chrome"))
+        assertEquals(300, usageTimes.timeSpentIn("com.twitter.android"))
+        assertEquals(200, usageTimes.timeSpentIn("org.mozilla.firefox"))
+    }
+
+    @Test
+    fun givenUnknownPackageShouldReturnZero() {
+        assertEquals(0, usageTimes.timeSpentIn("com.example"))
+    }
+}
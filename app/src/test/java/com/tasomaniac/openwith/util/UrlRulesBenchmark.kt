@@ -0,0 +1,168 @@
+package com.tasomaniac.openwith.util
+
+import com.tasomaniac.openwith.Benchmark
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import org.junit.experimental.categories.Category
+import java.nio.ByteBuffer
+import java.util.regex.Pattern
+
+/**
+ * Compares the compiled [UrlRules] with running every fixer, compiling its patterns, for every url.
+ */
+class UrlRulesBenchmark {
+
+    private val rewriter = UrlRules(
+        ByteBuffer.wrap(javaClass.classLoader.getResourceAsStream(UrlRules.ASSET).use { it.readBytes() })
+    )
+
+    @Test
+    fun rewritesLikeRunningEveryFixer() {
+        CORPUS.forEach { url ->
+            assertEquals(url, LegacyFixers.fix(url), rewriter.rewrite(url))
+        }
+    }
+
+    @Test
+    fun findsIntentTargetOfAmazonUrls() {
+        assertEquals(
+            UrlRules.IntentTarget.View(
+                "mshop://featured?ASIN=B000BFNOT8",
+                "vnd.android.cursor.item/vnd.amazon.mShop.featured"
+            ),
+            rewriter.intentTargetFor("http://www.amazon.com/gp/aw/d/B000BFNOT8/aiv/detailpage/")
+        )
+        assertEquals(
+            UrlRules.IntentTarget.Launch,
+            rewriter.intentTargetFor("http://www.amazon.com/gp/aw/d/0000000000/aiv/detailpage/")
+        )
+        assertNull(rewriter.intentTargetFor("https://www.amazon.com/gp/help/customer/display.html"))
+        assertNull(rewriter.intentTargetFor("https://www.ebay.com/itm/323419466842"))
+    }
+
+    @Test
+    fun findsHostOfUrls() {
+        assertEquals("www.amazon.co.uk", UrlRules.hostOf("https://www.amazon.co.uk/dp/B01LYYM9I3"))
+        assertEquals("m.ebay.com", UrlRules.hostOf("m.ebay.com/itm/123456"))
+        assertEquals("example.com", UrlRules.hostOf("http://user@Example.com:8080/path"))
+        assertNull(UrlRules.hostOf("https:///path"))
+    }
+
+    @Test
+    @Category(Benchmark::class)
+    fun benchmark() {
+        repeat(WARM_UP_ITERATIONS) {
+            CORPUS.forEach { LegacyFixers.fix(it) }
+            CORPUS.forEach { rewriter.rewrite(it) }
+        }
+
+        val legacy = measure { CORPUS.forEach { LegacyFixers.fix(it) } }
+        val rewritten = measure { CORPUS.forEach { rewriter.rewrite(it) } }
+
+        println("Every fixer: ${legacy / CORPUS.size} ns/url")
+        println("Compiled rules: ${rewritten / CORPUS.size} ns/url")
+    }
+
+    private fun measure(block: () -> Unit): Long {
+        val start = System.nanoTime()
+        repeat(ITERATIONS) { block() }
+        return (System.nanoTime() - start) / ITERATIONS
+    }
+
+    /**
+     * The fixers as they were before the rules engine.
+     */
+    @Suppress("MaxLineLength")
+    private object LegacyFixers {
+
+        fun fix(url: String) = listOf(::facebook, ::twitter, ::ebay, ::amazon, ::dailyMail, ::vk)
+            .fold(url) { fixed, fixer -> fixer(fixed) }
+
+        private fun facebook(url: String): String {
+            if (!url.contains("facebook.com")) return url
+            val supported = listOf(
+                "facebook.com/permalink.php", "facebook.com/story.php", "facebook.com/home.php",
+                "facebook.com/photo.php", "facebook.com/video.php", "facebook.com/donate", "facebook.com/events",
+                "facebook.com/groups", "/posts/", "/dialog/", "/sharer"
+            )
+            if (supported.any { url.contains(it) }) return url
+            return url.replace("https://facebook.com/", "https://www.facebook.com/")
+                .replace("http://facebook.com/", "http://www.facebook.com/")
+                .replace("?", "&")
+                .replace("facebook.com/", "facebook.com/n/?")
+        }
+
+        private fun twitter(url: String) = url.replace("//mobile.twitter.com", "//twitter.com")
+
+        private fun ebay(url: String): String {
+            val matcher = Pattern.compile("(?:(?:http|https)://)?(?:www|m).ebay.(?:com|co\\.uk|com.hk|com.au|at|ca|fr|de|ie|it|com\\.my|nl|ph|pl|com\\.sg|es|ch)/itm/(?:.*/)?(\\d+)(?:\\?.*)?")
+                .matcher(url)
+            return if (matcher.find()) "http://pages.ebay.com/link/?nav=item.view&id=" + matcher.group(1) else url
+        }
+
+        private fun amazon(url: String): String {
+            var asin = Pattern.compile(".*//www.amazon.(?:com|co\\.uk|co.jp|com\\.au|com\\.br|ca|cn|fr|de|in|it|com\\.mx|nl|es)/(?:.+/)?(?:gp/aw/d|gp/product|dp)+/(\\w{10}).*", Pattern.CASE_INSENSITIVE)
+                .matcher(url)
+                .let { if (it.find()) it.group(1) else null }
+            if (Pattern.compile("((?:http|https)://)?www\\.amazon\\.(?:com|co\\.uk|co\\.jp|com\\.au|com\\.br|ca|cn|fr|de|in|it|com\\.mx|nl|es)/?").matcher(url).matches()) {
+                asin = "0000000000"
+            }
+            return if (asin != null) "http://www.amazon.com/gp/aw/d/$asin/aiv/detailpage/" else url
+        }
+
+        private fun dailyMail(url: String): String {
+            val matcher = Pattern.compile("(?:(?:http|https)://)?(?:www|m).dailymail.co.uk/.*/article-(\\d*)?/.*")
+                .matcher(url)
+            val articleId = if (matcher.find()) matcher.group(1) else null
+            return if (articleId != null) "dailymail://article/$articleId" else url
+        }
+
+        private fun vk(url: String) = url.replace("//m.vk.com", "//vk.com")
+    }
+
+    companion object {
+        private const val WARM_UP_ITERATIONS = 200
+        private const val ITERATIONS = 1000
+
+        private val CORPUS = listOf(
+            "https://www.facebook.com/zuck",
+            "https://facebook.com/zuck?fref=nf",
+            "https://m.facebook.com/story.php?story_fbid=10104&id=4",
+            "https://www.facebook.com/groups/androiddevelopers/",
+            "https://www.facebook.com/nasa/posts/10157411",
+            "https://mobile.twitter.com/tasomaniac/status/1046717225389051904",
+            "https://twitter.com/AndroidDev",
+            "https://www.ebay.com/itm/Apple-iPhone-X-64GB/323419466842?hash=item4b4d",
+            "https://m.ebay.co.uk/itm/283155493128",
+            "https://www.ebay.de/sch/i.html?_nkw=lego",
+            "https://www.amazon.com/Garmin-Speed-Cadence-Bike-Sensor/dp/B000BFNOT8",
+            "https://www.amazon.de/gp/product/B01LYYM9I3",
+            "https://www.amazon.com/gp/aw/d/B001GNBJQO?vs=1",
+            "https://www.amazon.co.uk/",
+            "https://www.amazon.com/gp/help/customer/display.html",
+            "https://www.dailymail.co.uk/news/article-6225231/Brexit-talks.html",
+            "https://m.dailymail.co.uk/sciencetech/article-6224977/index.html",
+            "https://m.vk.com/durov",
+            "https://vk.com/id1",
+            "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+            "https://youtu.be/dQw4w9WgXcQ",
+            "https://github.com/tasomaniac/OpenLinkWith/issues/100",
+            "https://medium.com/androiddevelopers/room-rxjava-acb0cd4f3757",
+            "https://www.reddit.com/r/androiddev/comments/9kq5qz/",
+            "https://play.google.com/store/apps/details?id=com.tasomaniac.openwith",
+            "https://www.instagram.com/p/BoQ9ZxRlWXe/",
+            "https://open.spotify.com/track/4uLU6hMCjMI75M1A2tKUQC",
+            "https://www.nytimes.com/2018/10/01/technology/android.html",
+            "https://en.wikipedia.org/wiki/Android_(operating_system)",
+            "https://www.linkedin.com/in/tasomaniac",
+            "https://stackoverflow.com/questions/2201917/how-can-i-open-a-url-in-androids-web-browser",
+            "https://www.bbc.co.uk/news/technology-45709586",
+            "https://news.ycombinator.com/item?id=18120667",
+            "https://maps.google.com/?q=Amsterdam",
+            "https://www.netflix.com/title/80057281",
+            "www.amazon.com/dp/B000BFNOT8",
+            "https://example.com"
+        )
+    }
+}
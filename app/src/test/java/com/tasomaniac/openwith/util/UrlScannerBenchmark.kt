@@ -0,0 +1,99 @@
+package com.tasomaniac.openwith.util
+
+import com.tasomaniac.openwith.Benchmark
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.experimental.categories.Category
+import java.util.Random
+import java.util.regex.Pattern
+
+/**
+ * Compares the [UrlScanner] with the url regex it replaced.
+ */
+class UrlScannerBenchmark {
+
+    @Test
+    fun findsTheSameUrlsAsTheRegex() {
+        (CORPUS + generatedTexts()).forEach { text ->
+            assertEquals(text, regexMatches(text), scannerMatches(text))
+        }
+    }
+
+    @Test
+    @Category(Benchmark::class)
+    fun benchmark() {
+        WORST_CASES.forEach { text ->
+            val scanner = measure { UrlScanner(text).find() }
+            val regex = measure { URL_PATTERN.matcher(text).find() }
+            println("${text.length} chars: scanner ${scanner / 1000} us, regex ${regex / 1000} us")
+        }
+    }
+
+    private fun measure(block: () -> Unit): Long {
+        val start = System.nanoTime()
+        block()
+        return System.nanoTime() - start
+    }
+
+    private fun regexMatches(text: String): List<String> {
+        val matcher = URL_PATTERN.matcher(text)
+        return generateSequence { if (matcher.find()) matcher.group() else null }.toList()
+    }
+
+    private fun scannerMatches(text: String): List<String> {
+        val scanner = UrlScanner(text)
+        return generateSequence { if (scanner.find()) scanner.group() else null }.toList()
+    }
+
+    /**
+     * Short texts of url-ish fragments. Longer ones make the regex backtrack for too long.
+     */
+    private fun generatedTexts(): List<String> {
+        val random = Random(42)
+        return List(GENERATED_COUNT) {
+            (0 until random.nextInt(MAX_FRAGMENTS)).joinToString("") { FRAGMENTS[random.nextInt(FRAGMENTS.size)] }
+        }
+    }
+
+    companion object {
+        private const val GENERATED_COUNT = 20_000
+        private const val MAX_FRAGMENTS = 12
+
+        @Suppress("MaxLineLength")
+        private val URL_PATTERN = Pattern.compile("\\b((?:[a-z][\\w-]+:(?:/{1,3}|[a-z0-9%])|www\\d{0,3}[.]|[a-z0-9.\\-]+[.][a-z]{2,4}/)(?:[^\\s()<>]+|\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\))+(?:\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\)|[^\\s`!()\\[\\]{};:'\".,<>?«»“”‘’]))", Pattern.CASE_INSENSITIVE)
+
+        private val FRAGMENTS = listOf(
+            "a", "b", "W", "w", "www", "x", "h", "http", "ttp:", ":", "/", "//", ".", "-", "_", "1", "9", "%",
+            "(", ")", "<", ">", " ", "\n", "!", ",", "?", "'", "\"", "com", "co", ".com/", "é", "«", "»",
+            "[", "]", "wWw1.", "ab:", "é.a", "://"
+        )
+
+        private val CORPUS = listOf(
+            "",
+            "Check this out https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+            "https://en.wikipedia.org/wiki/Android_(operating_system).",
+            "(see http://example.com/path)",
+            "Shared via www.reddit.com, have a look!",
+            "amazon.com/dp/B000BFNOT8?ref=x, twitter.com/AndroidDev and mailto:someone@example.com",
+            "«https://open.spotify.com/track/4uLU6hMCjMI75M1A2tKUQC»",
+            "“http://a.co/d/1b2c3d4” ‘www2.example.org’",
+            "HTTPS://WWW.EXAMPLE.COM/UPPER?Q=1",
+            "file:///sdcard/Download/a.pdf content://media/external/images/1",
+            "<a href=\"https://github.com/tasomaniac/OpenLinkWith\">link</a>",
+            "http://example.com/foo_(bar)_(baz(qux))_end",
+            "Not a link: e.g. and i.e. or 3.14",
+            "tel:+31201234567 geo:52.37,4.89",
+            "www1234.example.com/ www123.example.com/",
+            "https://maps.google.com/?q=Amsterdam&ll=52.37,4.89;",
+            "foo-bar:baz -abc.def.gh/ _x.com/y",
+            "https://example.com/" + "!".repeat(20) + " and then http://later.com/page"
+        )
+
+        private val WORST_CASES = listOf(
+            "http://a(" + "x".repeat(18),
+            "x-".repeat(3000),
+            "(ttp:Whxhttp(?wW//W/:cowWw1.wWw1..com/ h)[. ttp:?\"?",
+            "Hi! ".repeat(25_000) + "https://example.com/end"
+        )
+    }
+}
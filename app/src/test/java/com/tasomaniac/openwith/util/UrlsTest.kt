@@ -0,0 +1,37 @@
+package com.tasomaniac.openwith.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class UrlsTest {
+
+    @Test
+    fun findsEveryUrlInOrder() {
+        val text = """
+            Links from today:
+            1. https://www.youtube.com/watch?v=dQw4w9WgXcQ
+            2. content://media/external/images/1
+            3. www.reddit.com/r/androiddev, and (https://github.com/tasomaniac/OpenLinkWith)
+        """
+
+        assertEquals(
+            listOf(
+                "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+                "www.reddit.com/r/androiddev",
+                "https://github.com/tasomaniac/OpenLinkWith"
+            ),
+            Urls.findUrls(text).toList()
+        )
+    }
+
+    @Test
+    fun findsNoUrlsInNullText() {
+        assertEquals(emptyList<String>(), Urls.findUrls(null).toList())
+    }
+
+    @Test
+    fun firstUrlIsNullWhenItIsLocal() {
+        assertNull(Urls.findFirstUrl("file:///sdcard/a.pdf https://example.com/"))
+    }
+}
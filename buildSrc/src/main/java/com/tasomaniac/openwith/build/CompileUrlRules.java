@@ -0,0 +1,44 @@
+package com.tasomaniac.openwith.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Compiles the text url rules into the binary asset which the app memory-maps.
+ */
+public class CompileUrlRules extends DefaultTask {
+
+    private File source;
+    private File output;
+
+    @InputFile
+    public File getSource() {
+        return source;
+    }
+
+    public void setSource(File source) {
+        this.source = source;
+    }
+
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    @TaskAction
+    public void compile() throws IOException {
+        byte[] compiled = UrlRulesCompiler.compile(Files.readAllLines(source.toPath(), StandardCharsets.UTF_8));
+        Files.write(output.toPath(), compiled);
+    }
+}
@@ -0,0 +1,311 @@
+package com.tasomaniac.openwith.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles the text url rules into the binary file read by {@code com.tasomaniac.openwith.util.UrlRules}.
+ * <p>
+ * Layout, all integers are big endian:
+ * <pre>
+ * header:  magic, format version, rules version, strings offset, rules offset, hosts offset
+ * strings: count, offset of each string, then each string as length + UTF-8 bytes
+ * rules:   count, offset of each rule, then each rule as kind, op count, and per op: code, arg count, string indices
+ * hosts:   slot count (power of two), then per slot: hash of the domain, domain string index (-1 if empty),
+ *          offset of the rule list. Each rule list is a count followed by rule indices, in file order.
+ * </pre>
+ * Keep the constants in sync with {@code UrlRules}.
+ */
+public final class UrlRulesCompiler {
+
+    static final int MAGIC = 0x4F4C5752;
+    static final int FORMAT_VERSION = 1;
+
+    static final int KIND_URL = 0;
+    static final int KIND_INTENT = 1;
+
+    private static final int HEADER_SIZE = 6 * 4;
+    /**
+     * Counts written as a single byte are read back signed.
+     */
+    private static final int MAX_BYTE_COUNT = Byte.MAX_VALUE;
+
+    private static final Map<String, Op> OPS = new HashMap<>();
+    private static final Pattern GROUP_REFERENCE = Pattern.compile("\\$(\\d)");
+
+    static {
+        OPS.put("skip-if-find", new Op(1, KIND_URL, 1, true, false));
+        OPS.put("replace", new Op(2, KIND_URL, 2, false, false));
+        OPS.put("rewrite-if-find", new Op(3, KIND_URL, 2, true, true));
+        OPS.put("rewrite-if-match", new Op(4, KIND_URL, 2, true, true));
+        OPS.put("view-if-find", new Op(5, KIND_INTENT, 3, true, true));
+        OPS.put("launch-if-find", new Op(6, KIND_INTENT, 1, true, false));
+    }
+
+    private final Map<String, Integer> stringIndices = new LinkedHashMap<>();
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, List<Integer>> rulesByDomain = new LinkedHashMap<>();
+    private int version = -1;
+
+    public static byte[] compile(List<String> lines) throws IOException {
+        UrlRulesCompiler compiler = new UrlRulesCompiler();
+        for (int i = 0; i < lines.size(); i++) {
+            compiler.parse(lines.get(i).trim(), i + 1);
+        }
+        return compiler.write();
+    }
+
+    private void parse(String line, int lineNumber) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        String[] tokens = line.split("\\s+");
+        String keyword = tokens[0];
+        if ("version".equals(keyword)) {
+            expectArgs(tokens, 1, lineNumber);
+            version = Integer.parseInt(tokens[1]);
+        } else if ("url".equals(keyword) || "intent".equals(keyword)) {
+            expectArgs(tokens, 1, lineNumber);
+            rules.add(new Rule("url".equals(keyword) ? KIND_URL : KIND_INTENT));
+        } else if ("hosts".equals(keyword)) {
+            Rule rule = currentRule(lineNumber);
+            for (int i = 1; i < tokens.length; i++) {
+                String domain = tokens[i].toLowerCase(Locale.US);
+                rulesByDomain.computeIfAbsent(domain, key -> new ArrayList<>()).add(rules.size() - 1);
+                indexOf(domain);
+            }
+        } else if (OPS.containsKey(keyword)) {
+            parseOp(OPS.get(keyword), tokens, lineNumber);
+        } else {
+            throw error(lineNumber, "Unknown keyword " + keyword);
+        }
+    }
+
+    private void parseOp(Op op, String[] tokens, int lineNumber) {
+        Rule rule = currentRule(lineNumber);
+        if (rule.kind != op.kind) {
+            throw error(lineNumber, tokens[0] + " can't be used in this kind of rule");
+        }
+        if (rule.ops.size() == MAX_BYTE_COUNT) {
+            throw error(lineNumber, "A rule can't have more than " + MAX_BYTE_COUNT + " ops");
+        }
+        expectArgs(tokens, op.argCount, lineNumber);
+        if (op.hasPattern) {
+            validate(tokens, op, lineNumber);
+        }
+        int[] args = new int[tokens.length - 1];
+        for (int i = 1; i < tokens.length; i++) {
+            args[i - 1] = indexOf(tokens[i]);
+        }
+        rule.ops.add(new RuleOp(op.code, args));
+    }
+
+    private static void validate(String[] tokens, Op op, int lineNumber) {
+        int groupCount;
+        try {
+            groupCount = Pattern.compile(tokens[1]).matcher("").groupCount();
+        } catch (PatternSyntaxException e) {
+            throw error(lineNumber, e.getMessage());
+        }
+        if (op.hasTemplate) {
+            Matcher matcher = GROUP_REFERENCE.matcher(tokens[2]);
+            while (matcher.find()) {
+                if (Integer.parseInt(matcher.group(1)) > groupCount) {
+                    throw error(lineNumber, "Template refers to a missing group " + matcher.group());
+                }
+            }
+        }
+    }
+
+    private Rule currentRule(int lineNumber) {
+        if (rules.isEmpty()) {
+            throw error(lineNumber, "Expected a url or intent rule first");
+        }
+        return rules.get(rules.size() - 1);
+    }
+
+    private int indexOf(String string) {
+        Integer index = stringIndices.get(string);
+        if (index == null) {
+            index = stringIndices.size();
+            stringIndices.put(string, index);
+        }
+        return index;
+    }
+
+    private byte[] write() throws IOException {
+        if (version < 0) {
+            throw new IllegalArgumentException("Url rules don't declare a version");
+        }
+        byte[] strings = writeStrings(HEADER_SIZE);
+        byte[] rulesSection = writeRules(HEADER_SIZE + strings.length);
+        int hostsOffset = HEADER_SIZE + strings.length + rulesSection.length;
+        byte[] hosts = writeHosts(hostsOffset);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(version);
+        out.writeInt(HEADER_SIZE);
+        out.writeInt(HEADER_SIZE + strings.length);
+        out.writeInt(hostsOffset);
+        out.write(strings);
+        out.write(rulesSection);
+        out.write(hosts);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Offsets in a section are written relative to the start of the file,
+     * so each section is laid out knowing where it starts.
+     */
+    private byte[] writeStrings(int start) throws IOException {
+        List<byte[]> encoded = new ArrayList<>();
+        for (String string : stringIndices.keySet()) {
+            encoded.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(encoded.size());
+        int offset = start + 4 + encoded.size() * 4;
+        for (byte[] string : encoded) {
+            out.writeInt(offset);
+            offset += 4 + string.length;
+        }
+        for (byte[] string : encoded) {
+            out.writeInt(string.length);
+            out.write(string);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] writeRules(int start) throws IOException {
+        List<byte[]> encoded = new ArrayList<>();
+        for (Rule rule : rules) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(rule.kind);
+            writeByteCount(out, rule.ops.size());
+            for (RuleOp op : rule.ops) {
+                out.writeByte(op.code);
+                writeByteCount(out, op.args.length);
+                for (int arg : op.args) {
+                    out.writeInt(arg);
+                }
+            }
+            encoded.add(bytes.toByteArray());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(encoded.size());
+        int offset = start + 4 + encoded.size() * 4;
+        for (byte[] rule : encoded) {
+            out.writeInt(offset);
+            offset += rule.length;
+        }
+        for (byte[] rule : encoded) {
+            out.write(rule);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] writeHosts(int start) throws IOException {
+        int slotCount = Integer.highestOneBit(Math.max(1, rulesByDomain.size() * 2 - 1)) << 1;
+        String[] slots = new String[slotCount];
+        for (String domain : rulesByDomain.keySet()) {
+            int slot = domain.hashCode() & (slotCount - 1);
+            while (slots[slot] != null) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot] = domain;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(slotCount);
+        int listOffset = start + 4 + slotCount * 3 * 4;
+        for (String domain : slots) {
+            out.writeInt(domain == null ? 0 : domain.hashCode());
+            out.writeInt(domain == null ? -1 : stringIndices.get(domain));
+            out.writeInt(domain == null ? -1 : listOffset);
+            if (domain != null) {
+                listOffset += 4 + rulesByDomain.get(domain).size() * 4;
+            }
+        }
+        for (String domain : slots) {
+            if (domain == null) {
+                continue;
+            }
+            List<Integer> ruleIndices = rulesByDomain.get(domain);
+            out.writeInt(ruleIndices.size());
+            for (int ruleIndex : ruleIndices) {
+                out.writeInt(ruleIndex);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeByteCount(DataOutputStream out, int count) throws IOException {
+        if (count > MAX_BYTE_COUNT) {
+            throw new IllegalArgumentException("Count " + count + " doesn't fit in a byte");
+        }
+        out.writeByte(count);
+    }
+
+    private static void expectArgs(String[] tokens, int count, int lineNumber) {
+        if (tokens.length != count + 1) {
+            throw error(lineNumber, tokens[0] + " expects " + count + " argument(s)");
+        }
+    }
+
+    private static IllegalArgumentException error(int lineNumber, String message) {
+        return new IllegalArgumentException("Url rules line " + lineNumber + ": " + message);
+    }
+
+    private static final class Rule {
+        final int kind;
+        final List<RuleOp> ops = new ArrayList<>();
+
+        Rule(int kind) {
+            this.kind = kind;
+        }
+    }
+
+    private static final class RuleOp {
+        final int code;
+        final int[] args;
+
+        RuleOp(int code, int[] args) {
+            this.code = code;
+            this.args = args;
+        }
+    }
+
+    private static final class Op {
+        final int code;
+        final int kind;
+        final int argCount;
+        final boolean hasPattern;
+        final boolean hasTemplate;
+
+        Op(int code, int kind, int argCount, boolean hasPattern, boolean hasTemplate) {
+            this.code = code;
+            this.kind = kind;
+            this.argCount = argCount;
+            this.hasPattern = hasPattern;
+            this.hasTemplate = hasTemplate;
+        }
+    }
+}